@@ -0,0 +1,111 @@
+package it.quick.azgangs.benchmark;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.commands.GangCommand;
+import it.quick.azgangs.managers.GangChatManager;
+import it.quick.azgangs.managers.GangListManager;
+import it.quick.azgangs.managers.GangManager;
+import it.quick.azgangs.managers.InviteManager;
+import it.quick.azgangs.managers.NameCacheManager;
+import it.quick.azgangs.utils.ConfigManager;
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLogger;
+import org.bukkit.plugin.java.JavaPlugin;
+import sun.misc.Unsafe;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Istanza di AZGangs montata fuori dal server, sopra BenchmarkServer e InMemoryStorage.
+ * JavaPlugin non si puo' costruire senza il PluginClassLoader, quindi l'istanza viene allocata senza costruttore
+ * e i campi vengono impostati come farebbero il loader di Bukkit e onEnable.
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+
+    final AZGangs plugin;
+    final InMemoryStorage storage;
+    final Player[] online;
+
+    private BenchmarkEnvironment(AZGangs plugin, InMemoryStorage storage, Player[] online) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.online = online;
+    }
+
+    /**
+     * @param onlinePlayers i primi N player del dataset entrano prima del caricamento, quindi riempiono le prime gang
+     * @param overrides     valori di config.yml da sostituire, per percorso
+     */
+    static BenchmarkEnvironment create(int gangCount, int membersPerGang, int onlinePlayers,
+                                       Map<String, Object> overrides) throws Exception {
+        Server server = BenchmarkServer.install();
+        BenchmarkServer.quitAll();
+
+        int playerCount = Math.min(onlinePlayers, gangCount * membersPerGang);
+        Player[] online = new Player[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            online[i] = BenchmarkServer.join(InMemoryStorage.playerUUID(i), InMemoryStorage.playerName(i));
+        }
+
+        AZGangs plugin = (AZGangs) unsafe().allocateInstance(AZGangs.class);
+        set(JavaPlugin.class, plugin, "server", server);
+        set(JavaPlugin.class, plugin, "description",
+                new PluginDescriptionFile("AZGangs", "benchmark", AZGangs.class.getName()));
+        set(JavaPlugin.class, plugin, "newConfig", loadConfig(overrides));
+
+        PluginLogger logger = new PluginLogger(plugin);
+        logger.setLevel(Level.WARNING);
+        set(JavaPlugin.class, plugin, "logger", logger);
+        set(AZGangs.class, null, "instance", plugin);
+
+        set(AZGangs.class, plugin, "configManager", new ConfigManager(plugin));
+        InMemoryStorage storage = new InMemoryStorage(plugin, gangCount, membersPerGang);
+        set(AZGangs.class, plugin, "storage", storage);
+        set(AZGangs.class, plugin, "nameCacheManager", new NameCacheManager(plugin));
+        set(AZGangs.class, plugin, "gangManager", new GangManager(plugin));
+        set(AZGangs.class, plugin, "gangListManager", new GangListManager(plugin));
+        set(AZGangs.class, plugin, "gangChatManager", new GangChatManager(plugin));
+        set(AZGangs.class, plugin, "inviteManager", new InviteManager(plugin));
+        set(AZGangs.class, plugin, "gangCommand", new GangCommand(plugin));
+
+        return new BenchmarkEnvironment(plugin, storage, online);
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+        BenchmarkServer.quitAll();
+    }
+
+    private static YamlConfiguration loadConfig(Map<String, Object> overrides) throws Exception {
+        YamlConfiguration config;
+        try (InputStream input = AZGangs.class.getResourceAsStream("/config.yml")) {
+            config = YamlConfiguration.loadConfiguration(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+
+        for (Map.Entry<String, Object> entry : overrides.entrySet()) {
+            config.set(entry.getKey(), entry.getValue());
+        }
+        return config;
+    }
+
+    private static void set(Class<?> owner, Object target, String name, Object value) throws Exception {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static Unsafe unsafe() throws Exception {
+        Field field = Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        return (Unsafe) field.get(null);
+    }
+}
@@ -0,0 +1,171 @@
+package it.quick.azgangs.benchmark;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server Bukkit finto costruito con Proxy: risponde solo ai metodi usati dal plugin.
+ * Lo scheduler esegue subito runTask e runTaskAsynchronously e ignora i task ripetuti o ritardati.
+ */
+final class BenchmarkServer {
+
+    private static final Map<UUID, Player> ONLINE = new ConcurrentHashMap<>();
+    private static final AtomicLong MESSAGES = new AtomicLong();
+    private static final Logger LOGGER = Logger.getLogger("AZGangsBenchmark");
+    private static Server server;
+
+    private BenchmarkServer() {
+    }
+
+    static synchronized Server install() {
+        if (server == null) {
+            LOGGER.setLevel(Level.WARNING);
+            server = proxy(Server.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getLogger":
+                        return LOGGER;
+                    case "getScheduler":
+                        return SCHEDULER;
+                    case "getPluginManager":
+                        return PLUGIN_MANAGER;
+                    case "getOnlinePlayers":
+                        return Collections.unmodifiableCollection(ONLINE.values());
+                    case "getPlayer":
+                        return args[0] instanceof UUID ? ONLINE.get(args[0]) : findByName((String) args[0]);
+                    case "getPlayerExact":
+                        return findByName((String) args[0]);
+                    case "getOfflinePlayer":
+                        return args[0] instanceof UUID ? offlinePlayer((UUID) args[0]) : null;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+            Bukkit.setServer(server);
+        }
+        return server;
+    }
+
+    static Player join(UUID uuid, String name) {
+        Player player = proxy(Player.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                case "getDisplayName":
+                    return name;
+                case "isOnline":
+                    return ONLINE.get(uuid) == proxy;
+                case "sendMessage":
+                    MESSAGES.incrementAndGet();
+                    return null;
+                case "hasPermission":
+                    return true;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "BenchmarkPlayer{" + name + "}";
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+        ONLINE.put(uuid, player);
+        return player;
+    }
+
+    static void quitAll() {
+        ONLINE.clear();
+    }
+
+    static Collection<Player> onlinePlayers() {
+        return ONLINE.values();
+    }
+
+    static long messagesSent() {
+        return MESSAGES.get();
+    }
+
+    private static Player findByName(String name) {
+        for (Player player : ONLINE.values()) {
+            if (player.getName().equalsIgnoreCase(name)) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    private static OfflinePlayer offlinePlayer(UUID uuid) {
+        Player online = ONLINE.get(uuid);
+        if (online != null) {
+            return online;
+        }
+        return proxy(OfflinePlayer.class, (proxy, method, args) ->
+                method.getName().equals("getUniqueId") ? uuid : defaultValue(method.getReturnType()));
+    }
+
+    private static final BukkitScheduler SCHEDULER = proxy(BukkitScheduler.class, (proxy, method, args) -> {
+        switch (method.getName()) {
+            case "runTask":
+            case "runTaskAsynchronously":
+            case "scheduleSyncDelayedTask":
+                if (args.length == 2 && args[1] instanceof Runnable) {
+                    ((Runnable) args[1]).run();
+                }
+                return defaultValue(method.getReturnType());
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    });
+
+    private static final PluginManager PLUGIN_MANAGER = proxy(PluginManager.class,
+            (proxy, method, args) -> defaultValue(method.getReturnType()));
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(BenchmarkServer.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
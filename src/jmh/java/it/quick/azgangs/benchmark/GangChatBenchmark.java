@@ -0,0 +1,65 @@
+package it.quick.azgangs.benchmark;
+
+import it.quick.azgangs.managers.GangChatManager;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messaggio di chat di gang: formattazione e invio a tutti i membri online della gang del mittente.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GangChatBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int gangs;
+
+    @Param({"5", "50"})
+    public int membersPerGang;
+
+    private BenchmarkEnvironment environment;
+    private GangChatManager chatManager;
+    private Player sender;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        // Limite di messaggi disattivato: qui interessa il costo del fan-out, non il rifiuto.
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("gang-settings.chat-rate-limit.messages", Integer.MAX_VALUE);
+
+        environment = BenchmarkEnvironment.create(gangs, membersPerGang, membersPerGang, overrides);
+        chatManager = environment.plugin.getGangChatManager();
+        sender = environment.online[0];
+        chatManager.toggle(sender.getUniqueId());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public boolean handleMessage() {
+        return chatManager.handleMessage(sender, "ci vediamo al punto di ritrovo tra cinque minuti");
+    }
+}
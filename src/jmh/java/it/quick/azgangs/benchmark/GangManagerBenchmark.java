@@ -0,0 +1,127 @@
+package it.quick.azgangs.benchmark;
+
+import it.quick.azgangs.listeners.DamageListener;
+import it.quick.azgangs.managers.GangManager;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controllo "stessa gang" usato a ogni colpo tra player, DamageListener compreso, e caricamento completo delle gang.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GangManagerBenchmark {
+
+    private static final int PAIRS = 1024;
+    private static final int MEMBERS_PER_GANG = 5;
+    private static final int ONLINE_PLAYERS = 1000;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int gangs;
+
+    private BenchmarkEnvironment environment;
+    private GangManager gangManager;
+    private DamageListener damageListener;
+    private UUID[] left;
+    private UUID[] right;
+    private UUID[] offlineLeft;
+    private UUID[] offlineRight;
+    private EntityDamageByEntityEvent[] events;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        environment = BenchmarkEnvironment.create(gangs, MEMBERS_PER_GANG, ONLINE_PLAYERS, Collections.emptyMap());
+        gangManager = environment.plugin.getGangManager();
+        damageListener = new DamageListener(environment.plugin);
+
+        // Meta' delle coppie nella stessa gang e meta' casuali, per seguire entrambi i rami.
+        Random random = new Random(42);
+        Player[] online = environment.online;
+        int players = environment.storage.playerCount();
+
+        left = new UUID[PAIRS];
+        right = new UUID[PAIRS];
+        offlineLeft = new UUID[PAIRS];
+        offlineRight = new UUID[PAIRS];
+        events = new EntityDamageByEntityEvent[PAIRS];
+
+        for (int i = 0; i < PAIRS; i++) {
+            int attacker = random.nextInt(online.length);
+            int victim = i % 2 == 0
+                    ? Math.min(online.length - 1, attacker - attacker % MEMBERS_PER_GANG + random.nextInt(MEMBERS_PER_GANG))
+                    : random.nextInt(online.length);
+
+            left[i] = online[attacker].getUniqueId();
+            right[i] = online[victim].getUniqueId();
+            events[i] = new EntityDamageByEntityEvent(online[attacker], online[victim],
+                    EntityDamageEvent.DamageCause.ENTITY_ATTACK, 1.0);
+
+            int first = random.nextInt(players);
+            int second = i % 2 == 0
+                    ? Math.min(players - 1, first - first % MEMBERS_PER_GANG + random.nextInt(MEMBERS_PER_GANG))
+                    : random.nextInt(players);
+            offlineLeft[i] = InMemoryStorage.playerUUID(first);
+            offlineRight[i] = InMemoryStorage.playerUUID(second);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public boolean arePlayersInSameGang() {
+        int index = cursor++ & (PAIRS - 1);
+        return gangManager.arePlayersInSameGang(offlineLeft[index], offlineRight[index]);
+    }
+
+    @Benchmark
+    public boolean areOnlinePlayersInSameGang() {
+        int index = cursor++ & (PAIRS - 1);
+        return gangManager.areOnlinePlayersInSameGang(left[index], right[index]);
+    }
+
+    @Benchmark
+    public boolean damageListener() {
+        EntityDamageByEntityEvent event = events[cursor++ & (PAIRS - 1)];
+        event.setCancelled(false);
+        damageListener.onPlayerDamage(event);
+        return event.isCancelled();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public int loadGangs() {
+        gangManager.resyncGangs(success -> {
+        });
+        return gangManager.getRanking().size();
+    }
+}
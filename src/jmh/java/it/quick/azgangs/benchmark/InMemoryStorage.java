@@ -0,0 +1,164 @@
+package it.quick.azgangs.benchmark;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.database.GangStorage;
+import it.quick.azgangs.database.WriteBatch;
+import it.quick.azgangs.database.WriteBehindQueue;
+import it.quick.azgangs.models.Gang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Storage in memoria con un dataset sintetico: gang "gang1".."gangN", ognuna con lo stesso numero di membri.
+ * Ogni lettura restituisce oggetti Gang nuovi, come farebbe un database; le scritture vengono scartate.
+ */
+final class InMemoryStorage implements GangStorage {
+
+    private static final long CREATED_AT = 1_600_000_000_000L;
+
+    private final int gangCount;
+    private final int membersPerGang;
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private final ScheduledExecutorService executor;
+    private final WriteBehindQueue writeQueue;
+
+    InMemoryStorage(AZGangs plugin, int gangCount, int membersPerGang) {
+        this.gangCount = gangCount;
+        this.membersPerGang = membersPerGang;
+        for (int id = 1; id <= gangCount; id++) {
+            idsByName.put(gangName(id).toLowerCase(), id);
+        }
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AZGangs-Benchmark-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writeQueue = new WriteBehindQueue(plugin, this, executor);
+    }
+
+    static UUID playerUUID(int index) {
+        return new UUID(0xA26A26L, index);
+    }
+
+    static String playerName(int index) {
+        return "player" + index;
+    }
+
+    static String gangName(int gangId) {
+        return "gang" + gangId;
+    }
+
+    int playerCount() {
+        return gangCount * membersPerGang;
+    }
+
+    // I membri della gang con id N sono i player da (N - 1) * membersPerGang in poi; il primo e' il proprietario.
+    private Gang build(int gangId) {
+        int first = (gangId - 1) * membersPerGang;
+        Gang gang = new Gang(gangId, gangName(gangId), playerUUID(first), CREATED_AT + gangId);
+        gang.setMembers(getGangMembers(gangId));
+        return gang;
+    }
+
+    private int gangOf(UUID playerUUID) {
+        if (playerUUID.getMostSignificantBits() != 0xA26A26L) {
+            return 0;
+        }
+        long index = playerUUID.getLeastSignificantBits();
+        return index >= 0 && index < playerCount() ? (int) (index / membersPerGang) + 1 : 0;
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    @Override
+    public boolean flush(WriteBatch batch) {
+        return true;
+    }
+
+    @Override
+    public List<Gang> getAllGangs() {
+        List<Gang> gangs = new ArrayList<>(gangCount);
+        for (int id = 1; id <= gangCount; id++) {
+            gangs.add(build(id));
+        }
+        return gangs;
+    }
+
+    @Override
+    public Gang getGangById(int gangId) {
+        return gangId >= 1 && gangId <= gangCount ? build(gangId) : null;
+    }
+
+    @Override
+    public Gang getGangByName(String name) {
+        Integer id = idsByName.get(name.toLowerCase());
+        return id != null ? build(id) : null;
+    }
+
+    @Override
+    public Gang getGangByPlayerUUID(UUID playerUUID) {
+        int gangId = gangOf(playerUUID);
+        return gangId != 0 ? build(gangId) : null;
+    }
+
+    @Override
+    public List<UUID> getGangMembers(int gangId) {
+        if (gangId < 1 || gangId > gangCount) {
+            return new ArrayList<>();
+        }
+
+        UUID[] members = new UUID[membersPerGang];
+        int first = (gangId - 1) * membersPerGang;
+        for (int i = 0; i < membersPerGang; i++) {
+            members[i] = playerUUID(first + i);
+        }
+        return Arrays.asList(members);
+    }
+
+    @Override
+    public int getHighestGangId() {
+        return gangCount;
+    }
+
+    @Override
+    public int getGangMemberCount(int gangId) {
+        return gangId >= 1 && gangId <= gangCount ? membersPerGang : 0;
+    }
+
+    @Override
+    public boolean isPlayerInGang(UUID playerUUID) {
+        return gangOf(playerUUID) != 0;
+    }
+
+    @Override
+    public Map<UUID, String> getPlayerNames(Collection<UUID> playerUUIDs) {
+        Map<UUID, String> names = new HashMap<>();
+        for (UUID playerUUID : playerUUIDs) {
+            if (gangOf(playerUUID) != 0) {
+                names.put(playerUUID, playerName((int) playerUUID.getLeastSignificantBits()));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,70 @@
+package it.quick.azgangs.benchmark;
+
+import it.quick.azgangs.placeholder.GangPlaceholder;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placeholder richiesti da scoreboard e TAB per ogni player online a ogni aggiornamento.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlaceholderBenchmark {
+
+    // Potenza di due: l'indice si ricava con una maschera e resta valido anche quando il cursore va in overflow.
+    private static final int ONLINE_PLAYERS = 1024;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int gangs;
+
+    @Param({"gangname", "owner", "membercount", "rank", "top_1_name"})
+    public String identifier;
+
+    private BenchmarkEnvironment environment;
+    private GangPlaceholder placeholder;
+    private Player[] online;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        environment = BenchmarkEnvironment.create(gangs, 5, ONLINE_PLAYERS, Collections.emptyMap());
+        placeholder = new GangPlaceholder(environment.plugin);
+        online = environment.online;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public String onPlaceholderRequest() {
+        return placeholder.onPlaceholderRequest(online[cursor++ & (ONLINE_PLAYERS - 1)], identifier);
+    }
+
+    @Benchmark
+    public String sameGangRelational() {
+        int index = cursor++;
+        return placeholder.onPlaceholderRequest(online[index & (ONLINE_PLAYERS - 1)],
+                online[(index * 31) & (ONLINE_PLAYERS - 1)], "samegang");
+    }
+}
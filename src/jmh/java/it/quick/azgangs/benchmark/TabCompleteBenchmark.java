@@ -0,0 +1,70 @@
+package it.quick.azgangs.benchmark;
+
+import it.quick.azgangs.commands.GangCommand;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completamento di /gang info e /gang invite, eseguito a ogni tasto premuto dal client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TabCompleteBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int gangs;
+
+    // "g" corrisponde a tutte le gang, "gang1" a una parte, "zz" a nessuna.
+    @Param({"g", "gang1", "zz"})
+    public String prefix;
+
+    private BenchmarkEnvironment environment;
+    private GangCommand command;
+    private Player sender;
+    private String[] infoArgs;
+    private String[] inviteArgs;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        environment = BenchmarkEnvironment.create(gangs, 5, 500, Collections.emptyMap());
+        command = environment.plugin.getGangCommand();
+        sender = environment.online[0];
+        infoArgs = new String[]{"info", prefix};
+        inviteArgs = new String[]{"invite", "player1"};
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public List<String> completeGangName() {
+        return command.onTabComplete(sender, null, "gang", infoArgs);
+    }
+
+    @Benchmark
+    public List<String> completePlayerName() {
+        return command.onTabComplete(sender, null, "gang", inviteArgs);
+    }
+}
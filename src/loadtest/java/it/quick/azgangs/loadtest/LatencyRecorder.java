@@ -0,0 +1,90 @@
+package it.quick.azgangs.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Campioni di latenza in nanosecondi, un buffer per thread senza sincronizzazione sul percorso di registrazione.
+ * I percentili sono esatti: i buffer vengono uniti e ordinati solo a fine test.
+ */
+final class LatencyRecorder {
+
+    private final List<Samples> buffers = new ArrayList<>();
+    private final ThreadLocal<Samples> local = ThreadLocal.withInitial(this::register);
+    private volatile boolean recording;
+
+    void start() {
+        recording = true;
+    }
+
+    void stop() {
+        recording = false;
+    }
+
+    void record(long nanos) {
+        if (recording) {
+            local.get().add(nanos);
+        }
+    }
+
+    private synchronized Samples register() {
+        Samples samples = new Samples();
+        buffers.add(samples);
+        return samples;
+    }
+
+    synchronized Summary summarize() {
+        int total = 0;
+        for (Samples samples : buffers) {
+            total += samples.size;
+        }
+
+        long[] all = new long[total];
+        int offset = 0;
+        for (Samples samples : buffers) {
+            System.arraycopy(samples.values, 0, all, offset, samples.size);
+            offset += samples.size;
+        }
+        Arrays.sort(all);
+        return new Summary(all);
+    }
+
+    private static final class Samples {
+
+        private long[] values = new long[4096];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    static final class Summary {
+
+        private final long[] sorted;
+
+        private Summary(long[] sorted) {
+            this.sorted = sorted;
+        }
+
+        int count() {
+            return sorted.length;
+        }
+
+        long percentile(double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        long max() {
+            return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        }
+    }
+}
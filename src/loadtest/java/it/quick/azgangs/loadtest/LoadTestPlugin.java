@@ -0,0 +1,76 @@
+package it.quick.azgangs.loadtest;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.utils.ConfigManager;
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLogger;
+import org.bukkit.plugin.java.JavaPlugin;
+import sun.misc.Unsafe;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AZGangs con la sola configurazione, la cartella dati e il logger: quanto basta a DatabaseManager.
+ * JavaPlugin richiede il PluginClassLoader, quindi l'istanza viene allocata senza costruttore.
+ */
+final class LoadTestPlugin {
+
+    private static final Logger LOGGER = Logger.getLogger("AZGangsLoadTest");
+
+    private LoadTestPlugin() {
+    }
+
+    static AZGangs create(File dataFolder, Map<String, Object> overrides) throws Exception {
+        Server server = (Server) Proxy.newProxyInstance(LoadTestPlugin.class.getClassLoader(),
+                new Class<?>[]{Server.class},
+                (proxy, method, args) -> method.getName().equals("getLogger") ? LOGGER : null);
+
+        AZGangs plugin = (AZGangs) unsafe().allocateInstance(AZGangs.class);
+        set(JavaPlugin.class, plugin, "server", server);
+        set(JavaPlugin.class, plugin, "dataFolder", dataFolder);
+        set(JavaPlugin.class, plugin, "description",
+                new PluginDescriptionFile("AZGangs", "loadtest", AZGangs.class.getName()));
+        set(JavaPlugin.class, plugin, "newConfig", loadConfig(overrides));
+
+        PluginLogger logger = new PluginLogger(plugin);
+        logger.setLevel(Level.WARNING);
+        set(JavaPlugin.class, plugin, "logger", logger);
+
+        set(AZGangs.class, plugin, "configManager", new ConfigManager(plugin));
+        return plugin;
+    }
+
+    private static YamlConfiguration loadConfig(Map<String, Object> overrides) throws Exception {
+        YamlConfiguration config;
+        try (InputStream input = AZGangs.class.getResourceAsStream("/config.yml")) {
+            config = YamlConfiguration.loadConfiguration(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+
+        for (Map.Entry<String, Object> entry : overrides.entrySet()) {
+            config.set(entry.getKey(), entry.getValue());
+        }
+        return config;
+    }
+
+    private static void set(Class<?> owner, Object target, String name, Object value) throws Exception {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static Unsafe unsafe() throws Exception {
+        Field field = Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        return (Unsafe) field.get(null);
+    }
+}
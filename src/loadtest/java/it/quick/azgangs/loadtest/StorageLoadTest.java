@@ -0,0 +1,382 @@
+package it.quick.azgangs.loadtest;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.database.DatabaseManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generatore di carico per DatabaseManager: piu' thread eseguono un mix di create/join/leave/rename/disband/lookup
+ * direttamente sullo storage, contro SQLite su file e H2 in modalita' MySQL.
+ *
+ * <pre>mvn -Ploadtest verify -Dloadtest.backends=sqlite,h2 -Dloadtest.threads=16 -Dloadtest.seconds=30</pre>
+ *
+ * Ogni thread lavora su player e gang propri, cosi' ogni operazione e' valida e non servono lock nel generatore:
+ * la contesa misurata e' solo quella dello storage e del pool.
+ */
+public final class StorageLoadTest {
+
+    enum Operation {
+        CREATE, JOIN, LEAVE, RENAME, DISBAND, LOOKUP
+    }
+
+    private final String backend;
+    private final int threads;
+    private final int warmupSeconds;
+    private final int seconds;
+    private final int playersPerThread;
+    private final int[] weights;
+
+    private final Map<Operation, LatencyRecorder> latencies = new EnumMap<>(Operation.class);
+    private final LatencyRecorder poolWait = new LatencyRecorder();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicInteger nextGangId = new AtomicInteger();
+
+    private StorageLoadTest(String backend, Map<String, String> options) {
+        this.backend = backend;
+        this.threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        this.warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        this.seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        this.playersPerThread = Integer.parseInt(options.getOrDefault("players", "500"));
+        this.weights = parseMix(options.getOrDefault("mix", "create:10,join:30,leave:20,rename:10,disband:5,lookup:25"));
+
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyRecorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0 && separator < arg.length() - 1) {
+                options.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+
+        for (String backend : options.getOrDefault("backends", "sqlite,h2").split(",")) {
+            new StorageLoadTest(backend.trim().toLowerCase(), options).run();
+        }
+    }
+
+    private void run() throws Exception {
+        File dataFolder = Files.createTempDirectory("azgangs-loadtest-" + backend).toFile();
+
+        Map<String, Object> overrides = new HashMap<>();
+        // Il proxy di monitoraggio resta attivo come in produzione, ma sotto carico il log delle query lente
+        // coprirebbe il report.
+        overrides.put("database.monitoring.slow-query-ms", 0);
+        switch (backend) {
+            case "sqlite":
+                overrides.put("database.type", "sqlite");
+                break;
+            case "h2":
+                overrides.put("database.type", "mysql");
+                overrides.put("database.jdbc-url", "jdbc:h2:file:" + new File(dataFolder, "azgangs").getAbsolutePath() +
+                        ";MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+                overrides.put("database.username", "sa");
+                overrides.put("database.password", "");
+                break;
+            default:
+                throw new IllegalArgumentException("Backend sconosciuto: " + backend + " (sqlite o h2)");
+        }
+
+        AZGangs plugin = LoadTestPlugin.create(dataFolder, overrides);
+        DatabaseManager storage = new DatabaseManager(plugin);
+        storage.setMetricsTrackerFactory(new PoolWaitTrackerFactory());
+        storage.initialize();
+
+        try {
+            nextGangId.set(storage.getHighestGangId() + 1);
+
+            List<Worker> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Worker worker = new Worker(storage, i);
+                worker.seed();
+                workers.add(worker);
+            }
+
+            CountDownLatch done = new CountDownLatch(threads);
+            for (Worker worker : workers) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        worker.loop();
+                    } finally {
+                        done.countDown();
+                    }
+                }, "AZGangs-LoadTest-" + worker.index);
+                thread.start();
+            }
+
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            for (LatencyRecorder recorder : latencies.values()) {
+                recorder.start();
+            }
+            poolWait.start();
+            long start = System.nanoTime();
+
+            TimeUnit.SECONDS.sleep(seconds);
+
+            for (LatencyRecorder recorder : latencies.values()) {
+                recorder.stop();
+            }
+            poolWait.stop();
+            long elapsed = System.nanoTime() - start;
+
+            for (Worker worker : workers) {
+                worker.running = false;
+            }
+            done.await();
+
+            report(elapsed);
+        } finally {
+            storage.close();
+            deleteRecursively(dataFolder);
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+        int total = 0;
+
+        System.out.println();
+        System.out.printf("== %s: %d thread, %d s ==%n", backend, threads, seconds);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s%n", "op", "count", "op/s", "p50 ms", "p99 ms", "max ms");
+
+        for (Map.Entry<Operation, LatencyRecorder> entry : latencies.entrySet()) {
+            LatencyRecorder.Summary summary = entry.getValue().summarize();
+            total += summary.count();
+            System.out.printf("%-10s %10d %10.1f %10.3f %10.3f %10.3f%n", entry.getKey().name().toLowerCase(),
+                    summary.count(), summary.count() / elapsedSeconds, millis(summary.percentile(50)),
+                    millis(summary.percentile(99)), millis(summary.max()));
+        }
+
+        LatencyRecorder.Summary wait = poolWait.summarize();
+        System.out.printf("%-10s %10d %10.1f%n", "totale", total, total / elapsedSeconds);
+        System.out.printf("attesa pool: %d prestiti, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                wait.count(), millis(wait.percentile(50)), millis(wait.percentile(99)), millis(wait.max()));
+        System.out.printf("operazioni fallite (warmup compreso): %d%n", failures.get());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[Operation.values().length];
+        for (String part : mix.split(",")) {
+            String[] entry = part.split(":");
+            weights[Operation.valueOf(entry[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(entry[1].trim());
+        }
+        return weights;
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private final class Worker {
+
+        private final DatabaseManager storage;
+        private final int index;
+        private final List<UUID> freePlayers = new ArrayList<>();
+        private final List<Integer> gangIds = new ArrayList<>();
+        private final Map<Integer, List<UUID>> members = new HashMap<>();
+        private final Map<Integer, Integer> renames = new HashMap<>();
+        private volatile boolean running = true;
+
+        private Worker(DatabaseManager storage, int index) {
+            this.storage = storage;
+            this.index = index;
+
+            UUID base = UUID.randomUUID();
+            for (int i = 0; i < playersPerThread; i++) {
+                freePlayers.add(new UUID(base.getMostSignificantBits(), i));
+            }
+        }
+
+        // Un quarto dei player parte gia' in una gang, cosi' leave e disband hanno subito qualcosa su cui lavorare.
+        private void seed() {
+            while (freePlayers.size() > playersPerThread * 3 / 4) {
+                create();
+                join();
+                join();
+            }
+        }
+
+        private void loop() {
+            int totalWeight = 0;
+            for (int weight : weights) {
+                totalWeight += weight;
+            }
+
+            while (running) {
+                int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+                Operation operation = Operation.values()[0];
+                for (Operation candidate : Operation.values()) {
+                    roll -= weights[candidate.ordinal()];
+                    if (roll < 0) {
+                        operation = candidate;
+                        break;
+                    }
+                }
+
+                long start = System.nanoTime();
+                boolean executed = execute(operation);
+                if (executed) {
+                    latencies.get(operation).record(System.nanoTime() - start);
+                }
+            }
+        }
+
+        private boolean execute(Operation operation) {
+            switch (operation) {
+                case CREATE:
+                    return create();
+                case JOIN:
+                    return join();
+                case LEAVE:
+                    return leave();
+                case RENAME:
+                    return rename();
+                case DISBAND:
+                    return disband();
+                case LOOKUP:
+                    return lookup();
+                default:
+                    return false;
+            }
+        }
+
+        private boolean create() {
+            if (freePlayers.isEmpty()) {
+                return false;
+            }
+
+            int gangId = nextGangId.getAndIncrement();
+            UUID owner = freePlayers.remove(freePlayers.size() - 1);
+            check(storage.createGang(gangId, "lt" + gangId, owner));
+
+            List<UUID> gangMembers = new ArrayList<>();
+            gangMembers.add(owner);
+            members.put(gangId, gangMembers);
+            gangIds.add(gangId);
+            return true;
+        }
+
+        private boolean join() {
+            if (freePlayers.isEmpty() || gangIds.isEmpty()) {
+                return false;
+            }
+
+            int gangId = randomGang();
+            UUID player = freePlayers.remove(freePlayers.size() - 1);
+            check(storage.addMember(gangId, player));
+            members.get(gangId).add(player);
+            return true;
+        }
+
+        private boolean leave() {
+            if (gangIds.isEmpty()) {
+                return false;
+            }
+
+            // Il proprietario e' sempre il primo membro e non lascia la gang: la scioglie.
+            List<UUID> gangMembers = members.get(randomGang());
+            if (gangMembers.size() < 2) {
+                return false;
+            }
+
+            UUID player = gangMembers.remove(gangMembers.size() - 1);
+            check(storage.removeMember(player));
+            freePlayers.add(player);
+            return true;
+        }
+
+        private boolean rename() {
+            if (gangIds.isEmpty()) {
+                return false;
+            }
+
+            int gangId = randomGang();
+            int count = renames.merge(gangId, 1, Integer::sum);
+            check(storage.renameGang(gangId, "lt" + gangId + "r" + count));
+            return true;
+        }
+
+        private boolean disband() {
+            if (gangIds.isEmpty()) {
+                return false;
+            }
+
+            int position = ThreadLocalRandom.current().nextInt(gangIds.size());
+            int gangId = gangIds.get(position);
+            check(storage.disbandGang(gangId));
+
+            gangIds.set(position, gangIds.get(gangIds.size() - 1));
+            gangIds.remove(gangIds.size() - 1);
+            freePlayers.addAll(members.remove(gangId));
+            renames.remove(gangId);
+            return true;
+        }
+
+        private boolean lookup() {
+            if (gangIds.isEmpty()) {
+                return false;
+            }
+
+            List<UUID> gangMembers = members.get(randomGang());
+            UUID player = gangMembers.get(ThreadLocalRandom.current().nextInt(gangMembers.size()));
+            if (storage.getGangByPlayerUUID(player) == null) {
+                failures.incrementAndGet();
+            }
+            return true;
+        }
+
+        private int randomGang() {
+            return gangIds.get(ThreadLocalRandom.current().nextInt(gangIds.size()));
+        }
+
+        private void check(boolean success) {
+            if (!success) {
+                failures.incrementAndGet();
+            }
+        }
+    }
+
+    // Tempo di attesa per ottenere una connessione dal pool, misurato da HikariCP stesso.
+    private final class PoolWaitTrackerFactory implements MetricsTrackerFactory {
+
+        @Override
+        public IMetricsTracker create(String poolName, PoolStats poolStats) {
+            return new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                    poolWait.record(elapsedAcquiredNanos);
+                }
+            };
+        }
+    }
+}
@@ -2,10 +2,19 @@ package it.quick.azgangs;
 
 import it.quick.azgangs.commands.GangCommand;
 import it.quick.azgangs.database.DatabaseManager;
+import it.quick.azgangs.database.FlatFileStorage;
+import it.quick.azgangs.database.GangStorage;
+import it.quick.azgangs.database.InstrumentedStorage;
+import it.quick.azgangs.listeners.ConnectionListener;
 import it.quick.azgangs.listeners.DamageListener;
 import it.quick.azgangs.listeners.GangChatListener;
+import it.quick.azgangs.managers.GangChatManager;
+import it.quick.azgangs.managers.GangListManager;
 import it.quick.azgangs.managers.GangManager;
 import it.quick.azgangs.managers.InviteManager;
+import it.quick.azgangs.managers.NameCacheManager;
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.MetricsReporter;
 import it.quick.azgangs.placeholder.GangPlaceholder;
 import it.quick.azgangs.utils.ConfigManager;
 import org.bukkit.Bukkit;
@@ -20,10 +29,14 @@ public class AZGangs extends JavaPlugin {
 
     private static AZGangs instance;
     private ConfigManager configManager;
-    private DatabaseManager databaseManager;
+    private GangStorage storage;
     private GangManager gangManager;
+    private GangListManager gangListManager;
+    private GangChatManager gangChatManager;
     private InviteManager inviteManager;
+    private NameCacheManager nameCacheManager;
     private GangCommand gangCommand;
+    private MetricsReporter metricsReporter;
 
     private final Set<Player> disabledMessages = new HashSet<>();
 
@@ -34,20 +47,30 @@ public class AZGangs extends JavaPlugin {
         saveDefaultConfig();
         configManager = new ConfigManager(this);
 
-        databaseManager = new DatabaseManager(this);
-        databaseManager.initialize();
+        Metrics.setPrimaryThread(Thread.currentThread());
+        Metrics.setEnabled(configManager.isMetricsEnabled());
 
+        storage = createStorage();
+        storage.initialize();
+
+        nameCacheManager = new NameCacheManager(this);
         gangManager = new GangManager(this);
+        gangListManager = new GangListManager(this);
+        gangChatManager = new GangChatManager(this);
         inviteManager = new InviteManager(this);
+        metricsReporter = new MetricsReporter(this);
 
         gangCommand = new GangCommand(this);
         getCommand("gang").setExecutor(gangCommand);
 
         getServer().getPluginManager().registerEvents(new DamageListener(this), this);
+        getServer().getPluginManager().registerEvents(new ConnectionListener(this), this);
         getServer().getPluginManager().registerEvents(new GangChatListener(this), this);
 
         if (getServer().getPluginManager().getPlugin("PlaceholderAPI") != null) {
-            new GangPlaceholder(this).register();
+            GangPlaceholder placeholder = new GangPlaceholder(this);
+            placeholder.register();
+            getServer().getPluginManager().registerEvents(placeholder, this);
             getLogger().info("Correttamente hooked in PlaceholderAPI!");
         } else {
             getLogger().warning("PlaceholderAPI non trovato, i Placeholders non funzionerà.");
@@ -56,16 +79,32 @@ public class AZGangs extends JavaPlugin {
         getLogger().info("AZGangs abilitato!");
 
         startAnnouncementTask();
+
+        // Il primo tick arriva a server avviato: i caricamenti di onEnable sul thread principale sono previsti.
+        DatabaseManager databaseManager = getDatabaseManager();
+        if (databaseManager != null) {
+            Bukkit.getScheduler().runTask(this, databaseManager::armWatchdog);
+        }
     }
 
     @Override
     public void onDisable() {
-        if (databaseManager != null) {
-            databaseManager.closeConnection();
+        if (metricsReporter != null) {
+            metricsReporter.write();
+        }
+        if (storage != null) {
+            storage.close();
         }
         getLogger().info("AZGangs has been disabled!");
     }
 
+    private GangStorage createStorage() {
+        if (configManager.getDatabaseType().equalsIgnoreCase("flatfile")) {
+            return new InstrumentedStorage(new FlatFileStorage(this));
+        }
+        return new InstrumentedStorage(new DatabaseManager(this));
+    }
+
     private void startAnnouncementTask() {
         Bukkit.getScheduler().runTaskLater(this, () -> {
             for (Player player : Bukkit.getOnlinePlayers()) {
@@ -89,18 +128,38 @@ public class AZGangs extends JavaPlugin {
         return configManager;
     }
 
+    public GangStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Lo storage SQL, o null con type: flatfile.
+     */
     public DatabaseManager getDatabaseManager() {
-        return databaseManager;
+        GangStorage delegate = storage instanceof InstrumentedStorage ? ((InstrumentedStorage) storage).getDelegate() : storage;
+        return delegate instanceof DatabaseManager ? (DatabaseManager) delegate : null;
     }
 
     public GangManager getGangManager() {
         return gangManager;
     }
 
+    public GangListManager getGangListManager() {
+        return gangListManager;
+    }
+
+    public GangChatManager getGangChatManager() {
+        return gangChatManager;
+    }
+
     public InviteManager getInviteManager() {
         return inviteManager;
     }
 
+    public NameCacheManager getNameCacheManager() {
+        return nameCacheManager;
+    }
+
     public GangCommand getGangCommand() {
         return gangCommand;
     }
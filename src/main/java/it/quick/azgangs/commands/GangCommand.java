@@ -1,7 +1,15 @@
 package it.quick.azgangs.commands;
 
 import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.database.DatabaseManager;
+import it.quick.azgangs.managers.GangListManager;
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.MetricsReporter;
+import it.quick.azgangs.metrics.TimerSnapshot;
 import it.quick.azgangs.models.Gang;
+import it.quick.azgangs.utils.MessagePlaceholder;
+import it.quick.azgangs.utils.MessageTemplate;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -11,19 +19,21 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class GangCommand implements CommandExecutor, TabCompleter {
 
     private final AZGangs plugin;
-    private final Set<UUID> gangChatToggle = new HashSet<>();
     private final List<String> subCommands = Arrays.asList(
-            "create", "disband", "rename", "invite", "join", "leave", "info", "list", "help", "chat"
+            "create", "disband", "rename", "invite", "join", "leave", "info", "list", "search", "help", "chat"
     );
+    private final List<String> adminSubCommands = Arrays.asList("resync", "reload", "debug");
 
     public GangCommand(AZGangs plugin) {
         this.plugin = plugin;
@@ -71,11 +81,23 @@ public class GangCommand implements CommandExecutor, TabCompleter {
                 handleGangChat(player);
                 break;
             case "list":
-                handleList(player);
+                handleList(player, args);
+                break;
+            case "search":
+                handleSearch(player, args);
                 break;
             case "help":
                 showHelp(player);
                 break;
+            case "resync":
+                handleResync(player);
+                break;
+            case "reload":
+                handleReload(player);
+                break;
+            case "debug":
+                handleDebug(player, args);
+                break;
             case "off":
                 AZGangs.getInstance().disableGangMessage(player);
                 player.sendMessage("§e[AZGangs] § Ok. Messaggio disabilitato.");
@@ -158,41 +180,13 @@ public class GangCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        if (gangChatToggle.contains(playerUUID)) {
-            gangChatToggle.remove(playerUUID);
-            player.sendMessage(plugin.getConfigManager().getMessage("gang-chat-disabled"));
-        } else {
-            gangChatToggle.add(playerUUID);
+        if (plugin.getGangChatManager().toggle(playerUUID)) {
             player.sendMessage(plugin.getConfigManager().getMessage("gang-chat-enabled"));
+        } else {
+            player.sendMessage(plugin.getConfigManager().getMessage("gang-chat-disabled"));
         }
     }
 
-    public boolean handleGangChatMessage(Player player, String message) {
-        UUID playerUUID = player.getUniqueId();
-
-        if (!gangChatToggle.contains(playerUUID)) {
-            return false;
-        }
-
-        Gang playerGang = plugin.getGangManager().getPlayerGang(playerUUID);
-
-        if (playerGang == null) {
-            gangChatToggle.remove(playerUUID);
-            return false;
-        }
-
-        for (UUID memberUUID : playerGang.getMembers()) {
-            Player member = Bukkit.getPlayer(memberUUID);
-            if (member != null && member.isOnline()) {
-                member.sendMessage(plugin.getConfigManager().getMessage("gang-chat-format")
-                        .replace("%playerName%", player.getName())
-                        .replace("%message%", message));
-            }
-        }
-
-        return true;
-    }
-
     private void handleJoin(Player player) {
         if (!player.hasPermission(plugin.getConfigManager().getPermission("join"))) {
             player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
@@ -202,10 +196,6 @@ public class GangCommand implements CommandExecutor, TabCompleter {
         plugin.getInviteManager().acceptInvite(player);
     }
 
-    public boolean isGangChatEnabled(UUID playerUUID) {
-        return gangChatToggle.contains(playerUUID);
-    }
-
     private void handleLeave(Player player) {
         if (!player.hasPermission(plugin.getConfigManager().getPermission("leave"))) {
             player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
@@ -221,57 +211,198 @@ public class GangCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        Gang gang;
-
         if (args.length > 1) {
             String gangName = args[1];
-            gang = plugin.getGangManager().getGangByName(gangName);
+            plugin.getGangManager().lookupGangByName(gangName, gang -> {
+                if (gang == null) {
+                    player.sendMessage(plugin.getConfigManager().getMessage("gang-not-found"));
+                    return;
+                }
 
-            if (gang == null) {
-                player.sendMessage(plugin.getConfigManager().getMessage("gang-not-found"));
-                return;
+                sendGangInfo(player, gang);
+            });
+            return;
+        }
+
+        Gang gang = plugin.getGangManager().getPlayerGang(player.getUniqueId());
+
+        if (gang == null) {
+            player.sendMessage(plugin.getConfigManager().getMessage("not-in-gang"));
+            return;
+        }
+
+        sendGangInfo(player, gang);
+    }
+
+    private void sendGangInfo(Player player, Gang gang) {
+        plugin.getNameCacheManager().whenLoaded(gang.getMembers(), () -> {
+            if (player.isOnline()) {
+                sendLoadedGangInfo(player, gang);
             }
-        } else {
-            gang = plugin.getGangManager().getPlayerGang(player.getUniqueId());
+        });
+    }
 
-            if (gang == null) {
-                player.sendMessage(plugin.getConfigManager().getMessage("not-in-gang"));
+    private void sendLoadedGangInfo(Player player, Gang gang) {
+        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-info-header",
+                MessagePlaceholder.GANG_NAME, gang.getName()));
+        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-info-owner",
+                MessagePlaceholder.OWNER, gang.getOwnerName()));
+        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-info-members",
+                MessagePlaceholder.MEMBERS, String.join(", ", gang.getMemberNames())));
+        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-info-footer"));
+    }
+
+    private void handleList(Player player, String[] args) {
+        if (!player.hasPermission(plugin.getConfigManager().getPermission("list"))) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
+
+        int page = 1;
+        GangListManager.SortOrder order = GangListManager.SortOrder.NAME;
+
+        for (int i = 1; i < args.length; i++) {
+            GangListManager.SortOrder parsedOrder = GangListManager.SortOrder.fromString(args[i]);
+            if (parsedOrder != null) {
+                order = parsedOrder;
+                continue;
+            }
+
+            try {
+                page = Integer.parseInt(args[i]);
+            } catch (NumberFormatException e) {
+                player.sendMessage(plugin.getConfigManager().getHelpMessage("list"));
                 return;
             }
         }
 
-        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-info-header")
-                .replace("%gangName%", gang.getName()));
-        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-info-owner")
-                .replace("%owner%", gang.getOwnerName()));
-        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-info-members")
-                .replace("%members%", String.join(", ", gang.getMemberNames())));
-        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-info-footer"));
+        plugin.getGangListManager().sendPage(player, page, order);
     }
 
-    private void handleList(Player player) {
-        if (!player.hasPermission(plugin.getConfigManager().getPermission("list"))) {
+    private void handleSearch(Player player, String[] args) {
+        if (!player.hasPermission(plugin.getConfigManager().getPermission("search"))) {
             player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
             return;
         }
 
-        List<Gang> gangs = plugin.getGangManager().getAllGangs();
+        if (args.length < 2) {
+            player.sendMessage(plugin.getConfigManager().getHelpMessage("search"));
+            return;
+        }
+
+        String prefix = args[1];
+        List<String> names = plugin.getGangManager().searchGangNames(prefix);
+
+        if (names.isEmpty()) {
+            player.sendMessage(plugin.getConfigManager().getMessage("gang-search-empty",
+                    MessagePlaceholder.PREFIX, prefix));
+            return;
+        }
+
+        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-search-header",
+                MessagePlaceholder.PREFIX, prefix));
+        for (String name : names) {
+            player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-search-entry",
+                    MessagePlaceholder.GANG_NAME, name));
+        }
+    }
+
+    private void handleResync(Player player) {
+        if (!player.hasPermission(plugin.getConfigManager().getPermission("admin"))) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
+
+        plugin.getGangManager().resyncGangs(success -> player.sendMessage(
+                plugin.getConfigManager().getMessage(success ? "gangs-resynced" : "gangs-resync-failed")));
+    }
+
+    private void handleReload(Player player) {
+        if (!player.hasPermission(plugin.getConfigManager().getPermission("admin"))) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
+
+        if (plugin.getConfigManager().reload()) {
+            plugin.getGangListManager().invalidate();
+            Metrics.setEnabled(plugin.getConfigManager().isMetricsEnabled());
+            player.sendMessage(plugin.getConfigManager().getMessage("config-reloaded"));
+        } else {
+            player.sendMessage(plugin.getConfigManager().getMessage("config-reload-failed"));
+        }
+    }
+
+    private void handleDebug(Player player, String[] args) {
+        if (!player.hasPermission(plugin.getConfigManager().getPermission("admin"))) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
 
-        if (gangs.isEmpty()) {
-            player.sendMessage(plugin.getConfigManager().getMessage("no-gangs"));
+        if (args.length == 2 && args[1].equalsIgnoreCase("reset")) {
+            Metrics.reset();
+            player.sendMessage(plugin.getConfigManager().getMessage("metrics-reset"));
             return;
         }
 
-        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-list-header"));
+        if (args.length != 2 || !args[1].equalsIgnoreCase("stats")) {
+            player.sendMessage(plugin.getConfigManager().getHelpMessage("debug"));
+            return;
+        }
 
-        for (Gang gang : gangs) {
-            player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-list-entry")
-                    .replace("%gangName%", gang.getName())
-                    .replace("%owner%", gang.getOwnerName())
-                    .replace("%memberCount%", String.valueOf(gang.getMemberCount())));
+        if (!Metrics.isEnabled()) {
+            player.sendMessage(plugin.getConfigManager().getMessage("metrics-disabled"));
+        } else {
+            showMetrics(player);
         }
+        showPoolStats(player);
+    }
+
+    private void showMetrics(Player player) {
+        List<TimerSnapshot> snapshots = Metrics.snapshot();
+        if (snapshots.isEmpty()) {
+            player.sendMessage(plugin.getConfigManager().getMessage("metrics-empty"));
+            return;
+        }
+
+        long elapsedNanos = Metrics.getElapsedNanos();
+        player.sendMessage(plugin.getConfigManager().getMessage("metrics-header",
+                MessagePlaceholder.MINUTES, String.valueOf(TimeUnit.NANOSECONDS.toMinutes(elapsedNanos))));
+
+        MessageTemplate entry = plugin.getConfigManager().getTemplateNoPrefix("metrics-entry");
+        Map<MessagePlaceholder, String> values = new EnumMap<>(MessagePlaceholder.class);
+        for (TimerSnapshot snapshot : snapshots) {
+            values.put(MessagePlaceholder.OPERATION, snapshot.getName());
+            values.put(MessagePlaceholder.CALLS, String.valueOf(snapshot.getCalls()));
+            values.put(MessagePlaceholder.P99, millis(snapshot.getP99Nanos(), "%.2f"));
+            values.put(MessagePlaceholder.MAX_TIME, millis(snapshot.getMaxNanos(), "%.2f"));
+            values.put(MessagePlaceholder.MAIN_THREAD_TIME, millis(snapshot.getPrimaryThreadNanos(), "%.1f"));
+            values.put(MessagePlaceholder.MAIN_THREAD_PERCENT, String.format(Locale.ROOT, "%.3f",
+                    MetricsReporter.percentOf(snapshot.getPrimaryThreadNanos(), elapsedNanos)));
+            player.sendMessage(entry.render(values));
+        }
+    }
 
-        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-list-footer"));
+    private static String millis(long nanos, String format) {
+        return String.format(Locale.ROOT, format, nanos / 1_000_000.0);
+    }
+
+    private void showPoolStats(Player player) {
+        DatabaseManager database = plugin.getDatabaseManager();
+        if (database == null) {
+            return;
+        }
+
+        MessageTemplate line = plugin.getConfigManager().getTemplate("pool-stats");
+        Map<MessagePlaceholder, String> values = new EnumMap<>(MessagePlaceholder.class);
+        for (Map.Entry<String, HikariPoolMXBean> entry : database.getPoolStats().entrySet()) {
+            HikariPoolMXBean pool = entry.getValue();
+            values.put(MessagePlaceholder.POOL, entry.getKey());
+            values.put(MessagePlaceholder.ACTIVE, String.valueOf(pool.getActiveConnections()));
+            values.put(MessagePlaceholder.IDLE, String.valueOf(pool.getIdleConnections()));
+            values.put(MessagePlaceholder.TOTAL, String.valueOf(pool.getTotalConnections()));
+            values.put(MessagePlaceholder.WAITING, String.valueOf(pool.getThreadsAwaitingConnection()));
+            player.sendMessage(line.render(values));
+        }
     }
 
     private void showHelp(Player player) {
@@ -285,6 +416,8 @@ public class GangCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(plugin.getConfigManager().getHelpMessage("leave"));
         player.sendMessage(plugin.getConfigManager().getHelpMessage("info"));
         player.sendMessage(plugin.getConfigManager().getHelpMessage("list"));
+        player.sendMessage(plugin.getConfigManager().getHelpMessage("search"));
+        player.sendMessage(plugin.getConfigManager().getHelpMessage("chat"));
         player.sendMessage(plugin.getConfigManager().getHelpMessage("help"));
 
         player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("help-footer"));
@@ -298,6 +431,8 @@ public class GangCommand implements CommandExecutor, TabCompleter {
             return completions;
         }
 
+        boolean admin = sender.hasPermission(plugin.getConfigManager().getPermission("admin"));
+
         if (args.length == 1) {
             String input = args[0].toLowerCase();
             for (String subCommand : subCommands) {
@@ -305,6 +440,13 @@ public class GangCommand implements CommandExecutor, TabCompleter {
                     completions.add(subCommand);
                 }
             }
+            if (admin) {
+                for (String subCommand : adminSubCommands) {
+                    if (subCommand.startsWith(input)) {
+                        completions.add(subCommand);
+                    }
+                }
+            }
         } else if (args.length == 2) {
             String subCommand = args[0].toLowerCase();
             String input = args[1].toLowerCase();
@@ -316,11 +458,26 @@ public class GangCommand implements CommandExecutor, TabCompleter {
                             .map(Player::getName)
                             .collect(Collectors.toList()));
                     break;
+                case "list":
+                    for (GangListManager.SortOrder order : GangListManager.SortOrder.values()) {
+                        if (order.name().toLowerCase().startsWith(input)) {
+                            completions.add(order.name().toLowerCase());
+                        }
+                    }
+                    break;
                 case "info":
-                    completions.addAll(plugin.getGangManager().getAllGangs().stream()
-                            .map(Gang::getName)
-                            .filter(name -> name.toLowerCase().startsWith(input))
-                            .collect(Collectors.toList()));
+                case "search":
+                    completions.addAll(plugin.getGangManager().searchGangNames(input));
+                    break;
+                case "debug":
+                    if (!admin) {
+                        break;
+                    }
+                    for (String option : Arrays.asList("stats", "reset")) {
+                        if (option.startsWith(input)) {
+                            completions.add(option);
+                        }
+                    }
                     break;
             }
         }
@@ -2,32 +2,67 @@ package it.quick.azgangs.database;
 
 import it.quick.azgangs.AZGangs;
 import it.quick.azgangs.models.Gang;
+import it.quick.azgangs.utils.ConfigManager;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
 
+import javax.sql.DataSource;
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-public class DatabaseManager {
+public class DatabaseManager implements GangStorage {
+
+    // Sotto il limite di 999 parametri per query delle versioni di SQLite incluse nei server.
+    private static final int NAME_LOOKUP_CHUNK_SIZE = 500;
+    private static final DateTimeFormatter SQLITE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSS]");
 
     private final AZGangs plugin;
-    private HikariDataSource dataSource;
+    private HikariDataSource pool;
+    private HikariDataSource readPool;
+    private DataSource dataSource;
+    private DataSource readDataSource;
     private final String tablePrefix;
     private final String gangsTable;
     private final String membersTable;
-    private final ExecutorService executorService;
+    private final String playersTable;
+    private final SqlDialect dialect;
+    private final ScheduledExecutorService executorService;
+    private final WriteBehindQueue writeQueue;
+    private final Object writeLock = new Object();
+    private SchemaMigrator migrator;
+    private volatile MemberTable memberTable;
+    private volatile MemberTable mirrorTable;
+    private MetricsTrackerFactory metricsTrackerFactory;
 
     public DatabaseManager(AZGangs plugin) {
         this.plugin = plugin;
         this.tablePrefix = plugin.getConfigManager().getDatabasePrefix();
         this.gangsTable = tablePrefix + "gangs";
         this.membersTable = tablePrefix + "members";
-        this.executorService = Executors.newFixedThreadPool(2);
+        this.playersTable = tablePrefix + "players";
+        this.dialect = SqlDialect.fromType(plugin.getConfigManager().getDatabaseType());
+        this.memberTable = new MemberTable(membersTable, dialect.compactKeys());
+        this.executorService = Executors.newScheduledThreadPool(2);
+        this.writeQueue = new WriteBehindQueue(plugin, this, executorService);
+    }
+
+    /**
+     * Metriche del pool (attesa e uso delle connessioni); va impostato prima di initialize().
+     */
+    public void setMetricsTrackerFactory(MetricsTrackerFactory metricsTrackerFactory) {
+        this.metricsTrackerFactory = metricsTrackerFactory;
     }
 
+    @Override
     public void initialize() {
         try {
             setupHikariDataSource();
@@ -39,32 +74,97 @@ public class DatabaseManager {
     }
 
     private void setupHikariDataSource() {
-        HikariConfig config = new HikariConfig();
         String type = plugin.getConfigManager().getDatabaseType().toLowerCase();
+        String jdbcUrl = plugin.getConfigManager().getDatabaseJdbcUrl();
 
         if (type.equals("mysql")) {
-            setupMySqlConfig(config);
+            pool = new HikariDataSource(mysqlPoolConfig(jdbcUrl));
+        } else if (jdbcUrl.isEmpty()) {
+            // SQLite ammette un solo writer alla volta: una connessione dedicata alle scritture, mentre in WAL
+            // le letture procedono in parallelo su connessioni proprie senza bloccare ne' essere bloccate.
+            pool = new HikariDataSource(sqlitePoolConfig(jdbcUrl, 1, "AZGangsWritePool"));
+            readPool = new HikariDataSource(sqlitePoolConfig(jdbcUrl,
+                    plugin.getConfigManager().getSqliteReadConnections(), "AZGangsReadPool"));
         } else {
-            setupSqliteConfig(config);
+            // Con un URL personalizzato (es. :memory:) connessioni diverse potrebbero non vedere lo stesso database.
+            pool = new HikariDataSource(sqlitePoolConfig(jdbcUrl, 1, "AZGangsConnectionPool"));
         }
 
-        config.setMaximumPoolSize(20);
-        config.setMinimumIdle(10);
-        config.setIdleTimeout(30000);
-        config.setMaxLifetime(45000);
-        config.setConnectionTimeout(5000);
+        dataSource = monitored(pool);
+        readDataSource = readPool != null ? monitored(readPool) : dataSource;
+    }
+
+    private HikariConfig mysqlPoolConfig(String jdbcUrl) {
+        ConfigManager settings = plugin.getConfigManager();
+        HikariConfig config = new HikariConfig();
+
+        if (!jdbcUrl.isEmpty()) {
+            // Il driver viene scelto da DriverManager in base all'URL.
+            config.setJdbcUrl(jdbcUrl);
+            config.setUsername(settings.getDatabaseUsername());
+            config.setPassword(settings.getDatabasePassword());
+        } else {
+            setupMySqlConfig(config);
+        }
+
+        // Pool a dimensione fissa: le connessioni vengono tenute vive con il keepalive invece di essere
+        // chiuse e riaperte di continuo; max-lifetime va tenuto sotto il wait_timeout del server.
+        config.setMaximumPoolSize(settings.getMysqlPoolSize());
+        config.setMinimumIdle(settings.getMysqlMinimumIdle());
+        config.setIdleTimeout(settings.getMysqlIdleTimeoutMillis());
+        config.setMaxLifetime(settings.getMysqlMaxLifetimeMillis());
+        config.setKeepaliveTime(settings.getMysqlKeepaliveTimeMillis());
+        config.setConnectionTimeout(settings.getDatabaseConnectionTimeoutMillis());
         config.setPoolName("AZGangsConnectionPool");
 
-        if (!type.equals("mysql")) {
-            config.setConnectionTestQuery("SELECT 1");
+        // Proprieta' di MySQL Connector/J, che altri driver potrebbero rifiutare.
+        if (jdbcUrl.isEmpty() || jdbcUrl.startsWith("jdbc:mysql:")) {
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", "250");
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("tcpKeepAlive", "true");
         }
 
-        config.addDataSourceProperty("cachePrepStmts", "true");
-        config.addDataSourceProperty("prepStmtCacheSize", "250");
-        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-        config.addDataSourceProperty("useServerPrepStmts", "true");
+        if (metricsTrackerFactory != null) {
+            config.setMetricsTrackerFactory(metricsTrackerFactory);
+        }
+        return config;
+    }
+
+    private HikariConfig sqlitePoolConfig(String jdbcUrl, int size, String poolName) {
+        ConfigManager settings = plugin.getConfigManager();
+        HikariConfig config = new HikariConfig();
+
+        if (!jdbcUrl.isEmpty()) {
+            config.setJdbcUrl(jdbcUrl);
+        } else {
+            setupSqliteConfig(config);
+        }
 
-        dataSource = new HikariDataSource(config);
+        // Il file e' locale: le connessioni restano aperte per tutta la vita del pool.
+        config.setMaximumPoolSize(size);
+        config.setMinimumIdle(size);
+        config.setIdleTimeout(0);
+        config.setMaxLifetime(0);
+        config.setConnectionTimeout(settings.getDatabaseConnectionTimeoutMillis());
+        config.setConnectionTestQuery("SELECT 1");
+        config.setPoolName(poolName);
+
+        // Pragma applicati da sqlite-jdbc all'apertura di ogni connessione.
+        if (jdbcUrl.isEmpty() || jdbcUrl.startsWith("jdbc:sqlite:")) {
+            config.addDataSourceProperty("journal_mode", "WAL");
+            config.addDataSourceProperty("busy_timeout", String.valueOf(settings.getSqliteBusyTimeoutMillis()));
+        }
+
+        if (metricsTrackerFactory != null) {
+            config.setMetricsTrackerFactory(metricsTrackerFactory);
+        }
+        return config;
+    }
+
+    private DataSource monitored(HikariDataSource pool) {
+        return plugin.getConfigManager().isQueryMonitoringEnabled() ? new MonitoredDataSource(plugin, pool) : pool;
     }
 
     private void setupMySqlConfig(HikariConfig config) {
@@ -91,23 +191,10 @@ public class DatabaseManager {
     }
 
     private void createTables() {
-        try (Connection connection = dataSource.getConnection();
-             Statement statement = connection.createStatement()) {
-
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + gangsTable + " (" +
-                    "id INTEGER PRIMARY KEY " + (isMySql() ? "AUTO_INCREMENT" : "AUTOINCREMENT") + ", " +
-                    "name VARCHAR(32) NOT NULL UNIQUE, " +
-                    "owner_uuid VARCHAR(36) NOT NULL, " +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")");
-
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + membersTable + " (" +
-                    "id INTEGER PRIMARY KEY " + (isMySql() ? "AUTO_INCREMENT" : "AUTOINCREMENT") + ", " +
-                    "gang_id INTEGER NOT NULL, " +
-                    "player_uuid VARCHAR(36) NOT NULL UNIQUE, " +
-                    "joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                    "FOREIGN KEY (gang_id) REFERENCES " + gangsTable + "(id) ON DELETE CASCADE" +
-                    ")");
+        try {
+            migrator = new SchemaMigrator(plugin, dataSource, tablePrefix);
+            registerMigrations(migrator);
+            migrator.migrate(executorService);
 
             plugin.getLogger().info("Database tables created successfully!");
         } catch (SQLException e) {
@@ -115,10 +202,266 @@ public class DatabaseManager {
         }
     }
 
-    public void closeConnection() {
-        if (dataSource != null) {
-            dataSource.close();
-            plugin.getLogger().info("Connessione al database chiusa.");
+    private void registerMigrations(SchemaMigrator migrator) {
+        migrator.register(new Migration(1, "tabelle iniziali") {
+            @Override
+            public void migrate(Connection connection) throws SQLException {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + gangsTable + " (" +
+                            "id INTEGER PRIMARY KEY " + dialect.autoIncrement() + ", " +
+                            "name VARCHAR(32) NOT NULL UNIQUE, " +
+                            "owner_uuid VARCHAR(36) NOT NULL, " +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                            ")");
+
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + membersTable + " (" +
+                            "id INTEGER PRIMARY KEY " + dialect.autoIncrement() + ", " +
+                            "gang_id INTEGER NOT NULL, " +
+                            "player_uuid VARCHAR(36) NOT NULL UNIQUE, " +
+                            "joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                            "FOREIGN KEY (gang_id) REFERENCES " + gangsTable + "(id) ON DELETE CASCADE" +
+                            ")");
+                }
+            }
+        });
+
+        migrator.register(new Migration(2, "indice sul nome normalizzato delle gang") {
+            @Override
+            public void migrate(Connection connection) throws SQLException {
+                try (Statement statement = connection.createStatement()) {
+                    if (!columnExists(connection, gangsTable, "name_lower")) {
+                        statement.executeUpdate("ALTER TABLE " + gangsTable + " ADD COLUMN name_lower VARCHAR(32)");
+                        statement.executeUpdate("UPDATE " + gangsTable + " SET name_lower = LOWER(name)");
+                    }
+                    if (!indexExists(connection, gangsTable, tablePrefix + "gangs_name_lower")) {
+                        // Su MySQL l'ALTER TABLE resta confermato anche se l'indice fallisce: i nomi che
+                        // differiscono solo per le maiuscole vanno risolti prima, o ogni avvio fallirebbe qui.
+                        statement.executeUpdate("UPDATE " + gangsTable + " SET name_lower = LOWER(name) " +
+                                "WHERE name_lower IS NULL");
+                        renameCaseDuplicates(connection);
+                        statement.executeUpdate("CREATE UNIQUE INDEX " + tablePrefix + "gangs_name_lower ON " +
+                                gangsTable + " (name_lower)");
+                    }
+                }
+            }
+        });
+
+        migrator.register(new CompactMembersMigration(3));
+
+        migrator.register(new Migration(4, "cache dei nomi dei player") {
+            @Override
+            public void migrate(Connection connection) throws SQLException {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + playersTable + " (" +
+                            dialect.compactKeyDefinition() + ", " +
+                            "name VARCHAR(16) NOT NULL, " +
+                            "PRIMARY KEY (" + dialect.compactKeys().columns() + ")" +
+                            ")" + dialect.compactTableOptions());
+                }
+            }
+        });
+    }
+
+    private class CompactMembersMigration extends OnlineMigration {
+
+        private final String compactTable = membersTable + "_compact";
+        private final MemberKeyFormat compactKeys = dialect.compactKeys();
+
+        CompactMembersMigration(int version) {
+            super(version, "membri con UUID compatti e indice su gang_id");
+        }
+
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + compactTable + " (" +
+                        dialect.compactKeyDefinition() + ", " +
+                        "gang_id INTEGER NOT NULL, " +
+                        "joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "PRIMARY KEY (" + compactKeys.columns() + "), " +
+                        "FOREIGN KEY (gang_id) REFERENCES " + gangsTable + "(id) ON DELETE CASCADE" +
+                        ")" + dialect.compactTableOptions());
+
+                if (!indexExists(connection, compactTable, tablePrefix + "members_gang_id")) {
+                    statement.executeUpdate("CREATE INDEX " + tablePrefix + "members_gang_id ON " +
+                            compactTable + " (gang_id)");
+                }
+            }
+        }
+
+        @Override
+        public boolean isComplete(Connection connection) throws SQLException {
+            if (!tableExists(connection, membersTable) && tableExists(connection, compactTable)) {
+                promote(connection);
+                return true;
+            }
+            return !columnExists(connection, membersTable, "id");
+        }
+
+        @Override
+        public void onStart() {
+            memberTable = new MemberTable(membersTable, MemberKeyFormat.LEGACY);
+            mirrorTable = new MemberTable(compactTable, compactKeys);
+        }
+
+        @Override
+        public long migrateChunk(Connection connection, long cursor, int limit) throws SQLException {
+            synchronized (writeLock) {
+                long last = -1;
+
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT id, gang_id, player_uuid, joined_at FROM " + membersTable +
+                                " WHERE id > ? ORDER BY id LIMIT ?");
+                     PreparedStatement insert = connection.prepareStatement(
+                             dialect.insertIgnore() + compactTable + " (gang_id, " + compactKeys.columns() +
+                                     ", joined_at) VALUES (?, " + compactKeys.placeholders() + ", ?)")) {
+
+                    select.setLong(1, cursor);
+                    select.setInt(2, limit);
+
+                    try (ResultSet resultSet = select.executeQuery()) {
+                        while (resultSet.next()) {
+                            last = resultSet.getLong("id");
+
+                            UUID playerUUID;
+                            try {
+                                playerUUID = MemberKeyFormat.LEGACY.read(resultSet);
+                            } catch (IllegalArgumentException e) {
+                                plugin.getLogger().warning("UUID non valido ignorato durante la migrazione: " +
+                                        resultSet.getString("player_uuid"));
+                                continue;
+                            }
+
+                            insert.setInt(1, resultSet.getInt("gang_id"));
+                            int index = compactKeys.bind(insert, 2, playerUUID);
+                            insert.setTimestamp(index, resultSet.getTimestamp("joined_at"));
+                            insert.addBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+
+                return last;
+            }
+        }
+
+        @Override
+        public void finish(Connection connection) throws SQLException {
+            synchronized (writeLock) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("DROP TABLE " + membersTable);
+                }
+                promote(connection);
+            }
+        }
+
+        private void promote(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("ALTER TABLE " + compactTable + " RENAME TO " + membersTable);
+            }
+            memberTable = new MemberTable(membersTable, compactKeys);
+            mirrorTable = null;
+        }
+    }
+
+    // A parita' di nome tiene la gang piu' vecchia; le altre ricevono il proprio id come suffisso.
+    private void renameCaseDuplicates(Connection connection) throws SQLException {
+        Map<String, String> kept = new HashMap<>();
+        Map<Integer, String> duplicates = new LinkedHashMap<>();
+        Map<Integer, String> originals = new HashMap<>();
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT id, name, name_lower FROM " + gangsTable + " ORDER BY id")) {
+            while (resultSet.next()) {
+                String name = resultSet.getString("name");
+                String original = kept.putIfAbsent(resultSet.getString("name_lower"), name);
+                if (original != null) {
+                    duplicates.put(resultSet.getInt("id"), name);
+                    originals.put(resultSet.getInt("id"), original);
+                }
+            }
+        }
+
+        if (duplicates.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement rename = connection.prepareStatement(
+                "UPDATE " + gangsTable + " SET name = ?, name_lower = ? WHERE id = ?")) {
+            for (Map.Entry<Integer, String> duplicate : duplicates.entrySet()) {
+                int id = duplicate.getKey();
+                String name = duplicate.getValue();
+
+                String renamed;
+                int attempt = 0;
+                do {
+                    String suffix = "_" + id + (attempt > 0 ? "_" + attempt : "");
+                    renamed = name.substring(0, Math.min(name.length(), 32 - suffix.length())) + suffix;
+                    attempt++;
+                } while (kept.containsKey(renamed.toLowerCase()));
+                kept.put(renamed.toLowerCase(), renamed);
+
+                rename.setString(1, renamed);
+                rename.setString(2, renamed.toLowerCase());
+                rename.setInt(3, id);
+                rename.addBatch();
+
+                plugin.getLogger().warning("Gang " + name + " (id " + id + ") rinominata in " + renamed + ": il nome " +
+                        "differisce solo per le maiuscole da quello della gang " + originals.get(id) + ".");
+            }
+            rename.executeBatch();
+        }
+    }
+
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String candidate : new String[]{table, table.toUpperCase(), table.toLowerCase()}) {
+            try (ResultSet resultSet = metaData.getTables(connection.getCatalog(), null, candidate, null)) {
+                if (resultSet.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean columnExists(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String candidate : new String[]{table, table.toUpperCase(), table.toLowerCase()}) {
+            try (ResultSet resultSet = metaData.getColumns(connection.getCatalog(), null, candidate, null)) {
+                while (resultSet.next()) {
+                    if (column.equalsIgnoreCase(resultSet.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean indexExists(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String candidate : new String[]{table, table.toUpperCase(), table.toLowerCase()}) {
+            try (ResultSet resultSet = metaData.getIndexInfo(connection.getCatalog(), null, candidate, false, false)) {
+                while (resultSet.next()) {
+                    if (index.equalsIgnoreCase(resultSet.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (migrator != null) {
+            migrator.stop();
+        }
+
+        for (int attempt = 0; attempt < 3 && writeQueue.hasPendingWrites(); attempt++) {
+            writeQueue.flush();
         }
 
         executorService.shutdown();
@@ -129,82 +472,223 @@ public class DatabaseManager {
         } catch (InterruptedException e) {
             executorService.shutdownNow();
         }
-    }
 
-    private boolean isMySql() {
-        return plugin.getConfigManager().getDatabaseType().equalsIgnoreCase("mysql");
+        if (readPool != null) {
+            readPool.close();
+        }
+        if (pool != null) {
+            pool.close();
+            plugin.getLogger().info("Connessione al database chiusa.");
+        }
     }
 
-    public boolean createGang(String name, UUID ownerUUID) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(
-                     "INSERT INTO " + gangsTable + " (name, owner_uuid) VALUES (?, ?)",
-                     Statement.RETURN_GENERATED_KEYS)) {
+    /**
+     * Da chiamare a server avviato: da qui in poi le query sul thread principale vengono segnalate.
+     */
+    public void armWatchdog() {
+        if (dataSource instanceof MonitoredDataSource) {
+            ((MonitoredDataSource) dataSource).armWatchdog();
+        }
+        if (readDataSource instanceof MonitoredDataSource && readDataSource != dataSource) {
+            ((MonitoredDataSource) readDataSource).armWatchdog();
+        }
+    }
 
-            statement.setString(1, name);
-            statement.setString(2, ownerUUID.toString());
+    /**
+     * Stato dei pool per nome, prima quello delle scritture; con SQLite c'e' anche il pool delle letture.
+     */
+    public Map<String, HikariPoolMXBean> getPoolStats() {
+        Map<String, HikariPoolMXBean> stats = new LinkedHashMap<>();
+        for (HikariDataSource source : Arrays.asList(pool, readPool)) {
+            if (source != null && source.getHikariPoolMXBean() != null) {
+                stats.put(source.getPoolName(), source.getHikariPoolMXBean());
+            }
+        }
+        return stats;
+    }
 
-            int affectedRows = statement.executeUpdate();
+    @Override
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
 
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        int gangId = generatedKeys.getInt(1);
-                        addMember(gangId, ownerUUID);
-                        return true;
+    @Override
+    public boolean flush(WriteBatch batch) {
+        // Stesso ordine della migrazione online: prima la connessione, poi writeLock. Con SQLite il pool delle
+        // scritture ha una sola connessione e l'ordine inverso bloccherebbe il flush fino al timeout.
+        try (Connection connection = dataSource.getConnection()) {
+            synchronized (writeLock) {
+                MemberTable members = memberTable;
+                MemberTable mirror = mirrorTable;
+                connection.setAutoCommit(false);
+
+                try {
+                    deleteDisbandedMembers(connection, members, batch);
+                    if (mirror != null) {
+                        deleteDisbandedMembers(connection, mirror, batch);
                     }
+                    writeGangs(connection, batch);
+                    writeMembers(connection, members, batch);
+                    if (mirror != null) {
+                        writeMembers(connection, mirror, batch);
+                    }
+                    writePlayerNames(connection, batch);
+
+                    connection.commit();
+                    return true;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Errore nella creazione di una gang: " + e.getMessage());
+            plugin.getLogger().severe("Errore nel salvataggio delle modifiche alle gang: " + e.getMessage());
+            return false;
         }
+    }
 
-        return false;
+    private void deleteDisbandedMembers(Connection connection, MemberTable members, WriteBatch batch) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "DELETE FROM " + members.getName() + " WHERE gang_id = ?")) {
+
+            int count = 0;
+            for (WriteBatch.GangWrite write : batch.getGangWrites()) {
+                if (write.isDisbanded()) {
+                    statement.setInt(1, write.getGangId());
+                    statement.addBatch();
+                    count++;
+                }
+            }
+
+            if (count > 0) {
+                statement.executeBatch();
+            }
+        }
     }
 
-    public boolean disbandGang(int gangId) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(
-                     "DELETE FROM " + gangsTable + " WHERE id = ?")) {
+    private void writeGangs(Connection connection, WriteBatch batch) throws SQLException {
+        try (PreparedStatement deleteGang = connection.prepareStatement(
+                     "DELETE FROM " + gangsTable + " WHERE id = ?");
+             PreparedStatement updateGangName = connection.prepareStatement(
+                     "UPDATE " + gangsTable + " SET name = ?, name_lower = ? WHERE id = ?");
+             PreparedStatement insertGang = connection.prepareStatement(
+                     "INSERT INTO " + gangsTable + " (id, name, name_lower, owner_uuid, created_at) " +
+                             "VALUES (?, ?, ?, ?, ?)")) {
+
+            int disbanded = 0;
+            int renamed = 0;
+            int created = 0;
+
+            for (WriteBatch.GangWrite write : batch.getGangWrites()) {
+                if (write.isDisbanded()) {
+                    deleteGang.setInt(1, write.getGangId());
+                    deleteGang.addBatch();
+                    disbanded++;
+                } else if (write.isCreated()) {
+                    insertGang.setInt(1, write.getGangId());
+                    insertGang.setString(2, write.getName());
+                    insertGang.setString(3, write.getName().toLowerCase());
+                    insertGang.setString(4, write.getOwnerUUID().toString());
+                    insertGang.setTimestamp(5, new Timestamp(write.getCreatedAt()));
+                    insertGang.addBatch();
+                    created++;
+                } else if (write.isRenamed()) {
+                    updateGangName.setString(1, write.getName());
+                    updateGangName.setString(2, write.getName().toLowerCase());
+                    updateGangName.setInt(3, write.getGangId());
+                    updateGangName.addBatch();
+                    renamed++;
+                }
+            }
 
-            statement.setInt(1, gangId);
+            if (disbanded > 0) {
+                deleteGang.executeBatch();
+            }
+            if (renamed > 0) {
+                updateGangName.executeBatch();
+            }
+            if (created > 0) {
+                insertGang.executeBatch();
+            }
+        }
+    }
 
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Errore nell'eliminazione di una gang: " + e.getMessage());
-            return false;
+    private void writeMembers(Connection connection, MemberTable members, WriteBatch batch) throws SQLException {
+        if (batch.getMemberWrites().isEmpty()) {
+            return;
+        }
+
+        MemberKeyFormat keys = members.getKeys();
+
+        try (PreparedStatement deleteMember = connection.prepareStatement(
+                     "DELETE FROM " + members.getName() + " WHERE " + keys.predicate(""));
+             PreparedStatement insertMember = connection.prepareStatement(
+                     "INSERT INTO " + members.getName() + " (gang_id, " + keys.columns() + ") " +
+                             "VALUES (?, " + keys.placeholders() + ")")) {
+
+            int inserted = 0;
+
+            for (Map.Entry<UUID, Integer> entry : batch.getMemberWrites().entrySet()) {
+                keys.bind(deleteMember, 1, entry.getKey());
+                deleteMember.addBatch();
+
+                if (entry.getValue() != WriteBatch.NO_GANG) {
+                    insertMember.setInt(1, entry.getValue());
+                    keys.bind(insertMember, 2, entry.getKey());
+                    insertMember.addBatch();
+                    inserted++;
+                }
+            }
+
+            deleteMember.executeBatch();
+            if (inserted > 0) {
+                insertMember.executeBatch();
+            }
         }
     }
 
-    public boolean renameGang(int gangId, String newName) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(
-                     "UPDATE " + gangsTable + " SET name = ? WHERE id = ?")) {
+    private void writePlayerNames(Connection connection, WriteBatch batch) throws SQLException {
+        if (batch.getPlayerNames().isEmpty()) {
+            return;
+        }
 
-            statement.setString(1, newName);
-            statement.setInt(2, gangId);
+        MemberKeyFormat keys = dialect.compactKeys();
 
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Errore nella ridenominazione di una gang: " + e.getMessage());
-            return false;
+        try (PreparedStatement statement = connection.prepareStatement(
+                dialect.upsert(playersTable, keys.columns() + ", name", keys.placeholders() + ", ?", "name"))) {
+
+            for (Map.Entry<UUID, String> entry : batch.getPlayerNames().entrySet()) {
+                int index = keys.bind(statement, 1, entry.getKey());
+                statement.setString(index, entry.getValue());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
         }
     }
 
+    @Override
     public Gang getGangById(int gangId) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(
-                     "SELECT * FROM " + gangsTable + " WHERE id = ?")) {
+        try (Connection connection = readDataSource.getConnection()) {
+            Gang gang = null;
 
-            statement.setInt(1, gangId);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT * FROM " + gangsTable + " WHERE id = ?")) {
+                statement.setInt(1, gangId);
 
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    return extractGangFromResultSet(resultSet);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        gang = extractGangFromResultSet(resultSet);
+                    }
                 }
             }
+
+            if (gang != null) {
+                loadGangMembers(connection, gang);
+            }
+            return gang;
         } catch (SQLException e) {
             plugin.getLogger().severe("Errore trovato: non è possibile trovare la gang tramite id " + e.getMessage());
         }
@@ -212,18 +696,26 @@ public class DatabaseManager {
         return null;
     }
 
+    @Override
     public Gang getGangByName(String name) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(
-                     "SELECT * FROM " + gangsTable + " WHERE LOWER(name) = LOWER(?)")) {
+        try (Connection connection = readDataSource.getConnection()) {
+            Gang gang = null;
 
-            statement.setString(1, name);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT * FROM " + gangsTable + " WHERE name_lower = ?")) {
+                statement.setString(1, name.toLowerCase());
 
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    return extractGangFromResultSet(resultSet);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        gang = extractGangFromResultSet(resultSet);
+                    }
                 }
             }
+
+            if (gang != null) {
+                loadGangMembers(connection, gang);
+            }
+            return gang;
         } catch (SQLException e) {
             plugin.getLogger().severe("Errore nell'ottenimento della gang: " + e.getMessage());
         }
@@ -231,20 +723,30 @@ public class DatabaseManager {
         return null;
     }
 
+    @Override
     public Gang getGangByPlayerUUID(UUID playerUUID) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(
-                     "SELECT g.* FROM " + gangsTable + " g " +
-                             "JOIN " + membersTable + " m ON g.id = m.gang_id " +
-                             "WHERE m.player_uuid = ?")) {
+        MemberTable members = memberTable;
 
-            statement.setString(1, playerUUID.toString());
+        try (Connection connection = readDataSource.getConnection()) {
+            Gang gang = null;
 
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    return extractGangFromResultSet(resultSet);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT g.* FROM " + gangsTable + " g " +
+                            "JOIN " + members.getName() + " m ON g.id = m.gang_id " +
+                            "WHERE " + members.getKeys().predicate("m."))) {
+                members.getKeys().bind(statement, 1, playerUUID);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        gang = extractGangFromResultSet(resultSet);
+                    }
                 }
             }
+
+            if (gang != null) {
+                loadGangMembers(connection, gang);
+            }
+            return gang;
         } catch (SQLException e) {
             plugin.getLogger().severe("Impossibile trovare la gang tramite UUID: " + e.getMessage());
         }
@@ -252,21 +754,36 @@ public class DatabaseManager {
         return null;
     }
 
+    @Override
     public List<Gang> getAllGangs() {
-        List<Gang> gangs = new ArrayList<>();
+        Map<Integer, Gang> gangs = new LinkedHashMap<>();
+        MemberTable members = memberTable;
 
-        try (Connection connection = dataSource.getConnection();
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery("SELECT * FROM " + gangsTable)) {
+        try (Connection connection = readDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
 
-            while (resultSet.next()) {
-                gangs.add(extractGangFromResultSet(resultSet));
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM " + gangsTable)) {
+                while (resultSet.next()) {
+                    Gang gang = extractGangFromResultSet(resultSet);
+                    gangs.put(gang.getId(), gang);
+                }
+            }
+
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT gang_id, " + members.getKeys().columns() + " FROM " + members.getName() +
+                            " ORDER BY joined_at")) {
+                while (resultSet.next()) {
+                    Gang gang = gangs.get(resultSet.getInt("gang_id"));
+                    if (gang != null) {
+                        gang.addMember(members.getKeys().read(resultSet));
+                    }
+                }
             }
         } catch (SQLException e) {
             plugin.getLogger().severe("Errore nell'ottenere tutte le gang: " + e.getMessage());
         }
 
-        return gangs;
+        return new ArrayList<>(gangs.values());
     }
 
     private Gang extractGangFromResultSet(ResultSet resultSet) throws SQLException {
@@ -274,59 +791,59 @@ public class DatabaseManager {
         String name = resultSet.getString("name");
         UUID ownerUUID = UUID.fromString(resultSet.getString("owner_uuid"));
 
-        Gang gang = new Gang(id, name, ownerUUID);
-
-        List<UUID> members = getGangMembers(id);
-        gang.setMembers(members);
-
-        return gang;
+        return new Gang(id, name, ownerUUID, readCreatedAt(resultSet));
     }
 
-    public boolean addMember(int gangId, UUID playerUUID) {
-        removeMember(playerUUID);
-
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(
-                     "INSERT INTO " + membersTable + " (gang_id, player_uuid) VALUES (?, ?)")) {
-
-            statement.setInt(1, gangId);
-            statement.setString(2, playerUUID.toString());
-
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Impossibile aggiungere membri alla gang: " + e.getMessage());
-            return false;
+    // Le righe create con il DEFAULT di SQLite hanno la data come testo in UTC, quelle nuove come millisecondi.
+    // Il testo va letto a mano: Timestamp.valueOf e il driver SQLite lo interpreterebbero nel fuso locale.
+    private long readCreatedAt(ResultSet resultSet) throws SQLException {
+        Object value = resultSet.getObject("created_at");
+        if (value instanceof String) {
+            try {
+                return LocalDateTime.parse((String) value, SQLITE_TIMESTAMP).toInstant(ZoneOffset.UTC).toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return 0L;
+            }
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
         }
+
+        Timestamp createdAt = resultSet.getTimestamp("created_at");
+        return createdAt != null ? createdAt.getTime() : 0L;
     }
 
-    public boolean removeMember(UUID playerUUID) {
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(
-                     "DELETE FROM " + membersTable + " WHERE player_uuid = ?")) {
+    private void loadGangMembers(Connection connection, Gang gang) throws SQLException {
+        MemberTable members = memberTable;
 
-            statement.setString(1, playerUUID.toString());
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT " + members.getKeys().columns() + " FROM " + members.getName() + " WHERE gang_id = ? " +
+                        "ORDER BY joined_at")) {
 
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Errore nella rimozione dei player dalla gang: " + e.getMessage());
-            return false;
+            statement.setInt(1, gang.getId());
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    gang.addMember(members.getKeys().read(resultSet));
+                }
+            }
         }
     }
 
+    @Override
     public List<UUID> getGangMembers(int gangId) {
         List<UUID> members = new ArrayList<>();
+        MemberTable table = memberTable;
 
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = readDataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(
-                     "SELECT player_uuid FROM " + membersTable + " WHERE gang_id = ?")) {
+                     "SELECT " + table.getKeys().columns() + " FROM " + table.getName() + " WHERE gang_id = ?")) {
 
             statement.setInt(1, gangId);
 
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
-                    members.add(UUID.fromString(resultSet.getString("player_uuid")));
+                    members.add(table.getKeys().read(resultSet));
                 }
             }
         } catch (SQLException e) {
@@ -336,10 +853,27 @@ public class DatabaseManager {
         return members;
     }
 
+    @Override
+    public int getHighestGangId() {
+        try (Connection connection = readDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MAX(id) FROM " + gangsTable)) {
+
+            if (resultSet.next()) {
+                return resultSet.getInt(1);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Errore nel trovare l'id piu' alto delle gang: " + e.getMessage());
+        }
+
+        return 0;
+    }
+
+    @Override
     public int getGangMemberCount(int gangId) {
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = readDataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(
-                     "SELECT COUNT(*) FROM " + membersTable + " WHERE gang_id = ?")) {
+                     "SELECT COUNT(*) FROM " + memberTable.getName() + " WHERE gang_id = ?")) {
 
             statement.setInt(1, gangId);
 
@@ -355,12 +889,15 @@ public class DatabaseManager {
         return 0;
     }
 
+    @Override
     public boolean isPlayerInGang(UUID playerUUID) {
-        try (Connection connection = dataSource.getConnection();
+        MemberTable members = memberTable;
+
+        try (Connection connection = readDataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(
-                     "SELECT COUNT(*) FROM " + membersTable + " WHERE player_uuid = ?")) {
+                     "SELECT COUNT(*) FROM " + members.getName() + " WHERE " + members.getKeys().predicate(""))) {
 
-            statement.setString(1, playerUUID.toString());
+            members.getKeys().bind(statement, 1, playerUUID);
 
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
@@ -373,4 +910,39 @@ public class DatabaseManager {
 
         return false;
     }
+
+    @Override
+    public Map<UUID, String> getPlayerNames(Collection<UUID> playerUUIDs) {
+        Map<UUID, String> names = new HashMap<>();
+        Set<UUID> requested = new HashSet<>(playerUUIDs);
+        List<UUID> lookup = new ArrayList<>(requested);
+        MemberKeyFormat keys = dialect.compactKeys();
+
+        try (Connection connection = readDataSource.getConnection()) {
+            for (int from = 0; from < lookup.size(); from += NAME_LOOKUP_CHUNK_SIZE) {
+                List<UUID> chunk = lookup.subList(from, Math.min(from + NAME_LOOKUP_CHUNK_SIZE, lookup.size()));
+
+                try (PreparedStatement statement = connection.prepareStatement("SELECT " + keys.columns() +
+                        ", name FROM " + playersTable + " WHERE " + keys.inPredicate(chunk.size()))) {
+                    int index = 1;
+                    for (UUID playerUUID : chunk) {
+                        index = keys.bindIn(statement, index, playerUUID);
+                    }
+
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            UUID playerUUID = keys.read(resultSet);
+                            if (requested.contains(playerUUID)) {
+                                names.put(playerUUID, resultSet.getString("name"));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Errore nel caricamento dei nomi dei player: " + e.getMessage());
+        }
+
+        return names;
+    }
 }
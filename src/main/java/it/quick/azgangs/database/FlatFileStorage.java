@@ -0,0 +1,683 @@
+package it.quick.azgangs.database;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.models.Gang;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Storage embedded per le installazioni su un solo server: tutte le modifiche vengono aggiunte in coda a un
+ * log mappato in memoria, riletto in sequenza all'avvio e compattato periodicamente in un nuovo file.
+ * Ogni record e' composto da lunghezza, CRC32 e contenuto; la lettura si ferma al primo record incompleto.
+ */
+public class FlatFileStorage implements GangStorage {
+
+    private static final int MAGIC = 0x415A4731;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MIN_CAPACITY = 1 << 20;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private static final byte GANG_CREATE = 1;
+    private static final byte GANG_RENAME = 2;
+    private static final byte GANG_DISBAND = 3;
+    private static final byte MEMBER_SET = 4;
+    private static final byte MEMBER_REMOVE = 5;
+    private static final byte PLAYER_NAME = 6;
+
+    private final AZGangs plugin;
+    private final File directory;
+    private final boolean syncOnFlush;
+    private final long compactionIntervalMinutes;
+    private final ScheduledExecutorService executorService;
+    private final WriteBehindQueue writeQueue;
+
+    private final Map<Integer, StoredGang> gangs = new HashMap<>();
+    private final Map<String, Integer> gangIdsByName = new HashMap<>();
+    private final Map<UUID, Integer> memberGangs = new HashMap<>();
+    private final Map<UUID, String> playerNames = new HashMap<>();
+    // Cresce se un record non ci sta: i testi sono limitati solo dalla lunghezza a 16 bit del formato.
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private final CRC32 crc = new CRC32();
+
+    private File logFile;
+    private int generation;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long recordCount;
+
+    public FlatFileStorage(AZGangs plugin) {
+        this.plugin = plugin;
+        this.directory = plugin.getDataFolder();
+        this.syncOnFlush = plugin.getConfigManager().isFlatFileSyncOnFlush();
+        this.compactionIntervalMinutes = plugin.getConfigManager().getFlatFileCompactionIntervalMinutes();
+        this.executorService = Executors.newSingleThreadScheduledExecutor();
+        this.writeQueue = new WriteBehindQueue(plugin, this, executorService);
+    }
+
+    @Override
+    public synchronized void initialize() {
+        try {
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+
+            generation = findLatestGeneration();
+            logFile = logFile(generation);
+
+            long start = System.currentTimeMillis();
+            open(logFile);
+            replay();
+            plugin.getLogger().info("Log delle gang " + logFile.getName() + " letto in " +
+                    (System.currentTimeMillis() - start) + "ms (" + recordCount + " record).");
+
+            compactIfNeeded();
+
+            executorService.scheduleWithFixedDelay(this::compactIfNeeded,
+                    compactionIntervalMinutes, compactionIntervalMinutes, TimeUnit.MINUTES);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Errore nell'apertura del log delle gang: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int attempt = 0; attempt < 3 && writeQueue.hasPendingWrites(); attempt++) {
+            writeQueue.flush();
+        }
+
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(800, TimeUnit.MILLISECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+        }
+
+        synchronized (this) {
+            try {
+                if (buffer != null) {
+                    buffer.force();
+                    unmap(buffer);
+                    buffer = null;
+                }
+                if (channel != null) {
+                    channel.close();
+                }
+                plugin.getLogger().info("Log delle gang chiuso.");
+            } catch (IOException e) {
+                plugin.getLogger().severe("Errore nella chiusura del log delle gang: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    @Override
+    public synchronized boolean flush(WriteBatch batch) {
+        if (buffer == null) {
+            plugin.getLogger().severe("Log delle gang non aperto, scrittura rifiutata.");
+            return false;
+        }
+
+        // Tutta la batch o niente: testi validati e spazio riservato prima di toccare log e memoria, cosi' un errore
+        // non lascia meta' batch applicata e il nuovo tentativo non duplica i record gia' scritti.
+        try {
+            ensureCapacity(reservedBytes(batch));
+
+            for (WriteBatch.GangWrite write : batch.getGangWrites()) {
+                if (write.isDisbanded()) {
+                    if (gangs.containsKey(write.getGangId())) {
+                        appendGangDisband(write.getGangId());
+                        applyDisband(write.getGangId());
+                    }
+                } else if (write.isCreated()) {
+                    appendGangCreate(write.getGangId(), write.getName(), write.getOwnerUUID(), write.getCreatedAt());
+                    applyCreate(write.getGangId(), write.getName(), write.getOwnerUUID(), write.getCreatedAt());
+                } else if (write.isRenamed() && gangs.containsKey(write.getGangId())) {
+                    appendGangRename(write.getGangId(), write.getName());
+                    applyRename(write.getGangId(), write.getName());
+                }
+            }
+
+            for (Map.Entry<UUID, Integer> entry : batch.getMemberWrites().entrySet()) {
+                UUID playerUUID = entry.getKey();
+                int gangId = entry.getValue();
+
+                if (gangId == WriteBatch.NO_GANG) {
+                    if (memberGangs.containsKey(playerUUID)) {
+                        appendMemberRemove(playerUUID);
+                        applyMemberRemove(playerUUID);
+                    }
+                } else if (gangs.containsKey(gangId)) {
+                    appendMemberSet(playerUUID, gangId);
+                    applyMemberSet(playerUUID, gangId);
+                }
+            }
+
+            for (Map.Entry<UUID, String> entry : batch.getPlayerNames().entrySet()) {
+                if (!entry.getValue().equals(playerNames.get(entry.getKey()))) {
+                    appendPlayerName(entry.getKey(), entry.getValue());
+                    playerNames.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            if (syncOnFlush) {
+                buffer.force();
+            }
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Errore nella scrittura del log delle gang: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized List<Gang> getAllGangs() {
+        List<Gang> result = new ArrayList<>(gangs.size());
+        for (StoredGang stored : gangs.values()) {
+            result.add(stored.toGang());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Gang getGangById(int gangId) {
+        StoredGang stored = gangs.get(gangId);
+        return stored != null ? stored.toGang() : null;
+    }
+
+    @Override
+    public synchronized Gang getGangByName(String name) {
+        Integer gangId = gangIdsByName.get(name.toLowerCase());
+        return gangId != null ? getGangById(gangId) : null;
+    }
+
+    @Override
+    public synchronized Gang getGangByPlayerUUID(UUID playerUUID) {
+        Integer gangId = memberGangs.get(playerUUID);
+        return gangId != null ? getGangById(gangId) : null;
+    }
+
+    @Override
+    public synchronized List<UUID> getGangMembers(int gangId) {
+        StoredGang stored = gangs.get(gangId);
+        return stored != null ? new ArrayList<>(stored.members) : new ArrayList<>();
+    }
+
+    @Override
+    public synchronized int getHighestGangId() {
+        int highestId = 0;
+        for (int gangId : gangs.keySet()) {
+            highestId = Math.max(highestId, gangId);
+        }
+        return highestId;
+    }
+
+    @Override
+    public synchronized int getGangMemberCount(int gangId) {
+        StoredGang stored = gangs.get(gangId);
+        return stored != null ? stored.members.size() : 0;
+    }
+
+    @Override
+    public synchronized boolean isPlayerInGang(UUID playerUUID) {
+        return memberGangs.containsKey(playerUUID);
+    }
+
+    @Override
+    public synchronized Map<UUID, String> getPlayerNames(Collection<UUID> playerUUIDs) {
+        Map<UUID, String> names = new HashMap<>();
+        for (UUID playerUUID : playerUUIDs) {
+            String name = playerNames.get(playerUUID);
+            if (name != null) {
+                names.put(playerUUID, name);
+            }
+        }
+        return names;
+    }
+
+    private void applyCreate(int gangId, String name, UUID ownerUUID, long createdAt) {
+        gangs.put(gangId, new StoredGang(gangId, name, ownerUUID, createdAt));
+        gangIdsByName.put(name.toLowerCase(), gangId);
+    }
+
+    private void applyRename(int gangId, String newName) {
+        StoredGang stored = gangs.get(gangId);
+        if (stored != null) {
+            gangIdsByName.remove(stored.name.toLowerCase());
+            stored.name = newName;
+            gangIdsByName.put(newName.toLowerCase(), gangId);
+        }
+    }
+
+    private void applyDisband(int gangId) {
+        StoredGang stored = gangs.remove(gangId);
+        if (stored != null) {
+            gangIdsByName.remove(stored.name.toLowerCase());
+            for (UUID member : stored.members) {
+                memberGangs.remove(member);
+            }
+        }
+    }
+
+    private void applyMemberSet(UUID playerUUID, int gangId) {
+        applyMemberRemove(playerUUID);
+
+        StoredGang stored = gangs.get(gangId);
+        if (stored != null) {
+            stored.members.add(playerUUID);
+            memberGangs.put(playerUUID, gangId);
+        }
+    }
+
+    private void applyMemberRemove(UUID playerUUID) {
+        Integer previous = memberGangs.remove(playerUUID);
+        if (previous != null) {
+            StoredGang stored = gangs.get(previous);
+            if (stored != null) {
+                stored.members.remove(playerUUID);
+            }
+        }
+    }
+
+    private void appendGangCreate(int gangId, String name, UUID ownerUUID, long createdAt) throws IOException {
+        startRecord(GANG_CREATE);
+        scratch.putInt(gangId);
+        scratch.putLong(createdAt);
+        putUUID(ownerUUID);
+        putString(name);
+        endRecord();
+    }
+
+    private void appendGangRename(int gangId, String newName) throws IOException {
+        startRecord(GANG_RENAME);
+        scratch.putInt(gangId);
+        putString(newName);
+        endRecord();
+    }
+
+    private void appendGangDisband(int gangId) throws IOException {
+        startRecord(GANG_DISBAND);
+        scratch.putInt(gangId);
+        endRecord();
+    }
+
+    private void appendMemberSet(UUID playerUUID, int gangId) throws IOException {
+        startRecord(MEMBER_SET);
+        putUUID(playerUUID);
+        scratch.putInt(gangId);
+        endRecord();
+    }
+
+    private void appendMemberRemove(UUID playerUUID) throws IOException {
+        startRecord(MEMBER_REMOVE);
+        putUUID(playerUUID);
+        endRecord();
+    }
+
+    private void appendPlayerName(UUID playerUUID, String name) throws IOException {
+        startRecord(PLAYER_NAME);
+        putUUID(playerUUID);
+        putString(name);
+        endRecord();
+    }
+
+    // Limite superiore dei byte che la batch puo' aggiungere al log; fallisce se un testo non e' rappresentabile.
+    private static int reservedBytes(WriteBatch batch) throws IOException {
+        long bytes = 0;
+        for (WriteBatch.GangWrite write : batch.getGangWrites()) {
+            int nameBytes = write.getName() != null ? stringBytes(write.getName()) : 0;
+            bytes += RECORD_HEADER_SIZE + 1 + 4 + 8 + 16 + 2 + nameBytes;
+        }
+        bytes += (long) batch.getMemberWrites().size() * (RECORD_HEADER_SIZE + 1 + 16 + 4);
+        for (String name : batch.getPlayerNames().values()) {
+            bytes += RECORD_HEADER_SIZE + 1 + 16 + 2 + stringBytes(name);
+        }
+
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Batch di " + bytes + " byte troppo grande per il log delle gang.");
+        }
+        return (int) bytes;
+    }
+
+    private static int stringBytes(String value) throws IOException {
+        int length = value.getBytes(StandardCharsets.UTF_8).length;
+        if (length > MAX_STRING_BYTES) {
+            throw new IOException("Testo di " + length + " byte troppo lungo per il log delle gang.");
+        }
+        return length;
+    }
+
+    private void startRecord(byte type) {
+        scratch.clear();
+        scratch.put(type);
+    }
+
+    private void putUUID(UUID uuid) {
+        scratch.putLong(uuid.getMostSignificantBits());
+        scratch.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("Testo di " + bytes.length + " byte troppo lungo per il log delle gang.");
+        }
+
+        if (scratch.remaining() < 2 + bytes.length) {
+            ByteBuffer larger = ByteBuffer.allocate(scratch.position() + 2 + bytes.length);
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+        scratch.putShort((short) bytes.length);
+        scratch.put(bytes);
+    }
+
+    private void endRecord() throws IOException {
+        int length = scratch.position();
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+
+        ensureCapacity(RECORD_HEADER_SIZE + length);
+        buffer.putInt(length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(scratch.array(), 0, length);
+        recordCount++;
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        // Lascia sempre spazio per un header a zero, che segna la fine del log.
+        if (buffer.remaining() >= bytes + RECORD_HEADER_SIZE) {
+            return;
+        }
+
+        // Un MappedByteBuffer non supera i 2 GB: oltre serve una compattazione, non una mappatura piu' grande.
+        int position = buffer.position();
+        if ((long) position + bytes + RECORD_HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Log delle gang oltre il limite di 2 GB di un file mappato.");
+        }
+
+        long capacity = Math.min(Integer.MAX_VALUE,
+                Math.max((long) buffer.capacity() * 2, (long) position + bytes + MIN_CAPACITY));
+        MappedByteBuffer previous = buffer;
+        previous.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.position(position);
+        unmap(previous);
+    }
+
+    // Libera subito la mappatura invece di aspettare il GC, che altrimenti tiene aperte tutte quelle vecchie.
+    // Va chiamato solo su buffer che nessuno usa piu': ogni accesso successivo farebbe cadere la JVM.
+    private static void unmap(MappedByteBuffer mapped) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), mapped);
+        } catch (NoSuchMethodException e) {
+            // Java 8: il cleaner e' esposto dal buffer stesso.
+            try {
+                Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(mapped);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // Senza accesso al cleaner la mappatura viene liberata dal GC.
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // Come sopra.
+        }
+    }
+
+    private void open(File file) throws IOException {
+        boolean created = !file.exists() || file.length() < HEADER_SIZE;
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), MIN_CAPACITY));
+
+        if (created) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, 1);
+        } else if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Il file " + file.getName() + " non e' un log di AZGangs.");
+        }
+        buffer.position(HEADER_SIZE);
+    }
+
+    private void replay() {
+        recordCount = 0;
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+
+            byte[] record = new byte[length];
+            buffer.get(record);
+            crc.reset();
+            crc.update(record, 0, length);
+
+            if ((int) crc.getValue() != checksum) {
+                plugin.getLogger().warning("Record incompleto alla posizione " + start + " del log delle gang, ignorato.");
+                buffer.position(start);
+                break;
+            }
+
+            apply(ByteBuffer.wrap(record));
+            recordCount++;
+        }
+
+        int end = buffer.position();
+        for (int i = end; i < Math.min(end + RECORD_HEADER_SIZE, buffer.capacity()); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    private void apply(ByteBuffer record) {
+        byte type = record.get();
+
+        switch (type) {
+            case GANG_CREATE: {
+                int gangId = record.getInt();
+                long createdAt = record.getLong();
+                UUID ownerUUID = getUUID(record);
+                applyCreate(gangId, getString(record), ownerUUID, createdAt);
+                break;
+            }
+            case GANG_RENAME: {
+                int gangId = record.getInt();
+                applyRename(gangId, getString(record));
+                break;
+            }
+            case GANG_DISBAND:
+                applyDisband(record.getInt());
+                break;
+            case MEMBER_SET: {
+                UUID playerUUID = getUUID(record);
+                applyMemberSet(playerUUID, record.getInt());
+                break;
+            }
+            case MEMBER_REMOVE:
+                applyMemberRemove(getUUID(record));
+                break;
+            case PLAYER_NAME: {
+                UUID playerUUID = getUUID(record);
+                playerNames.put(playerUUID, getString(record));
+                break;
+            }
+            default:
+                plugin.getLogger().warning("Tipo di record sconosciuto nel log delle gang: " + type);
+        }
+    }
+
+    private static UUID getUUID(ByteBuffer record) {
+        return new UUID(record.getLong(), record.getLong());
+    }
+
+    private static String getString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private synchronized void compactIfNeeded() {
+        long liveRecords = gangs.size() + memberGangs.size() + playerNames.size();
+        if (recordCount <= liveRecords * 2 + 1024) {
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            long before = recordCount;
+            compact();
+            plugin.getLogger().info("Log delle gang compattato: " + before + " -> " + recordCount + " record in " +
+                    (System.currentTimeMillis() - start) + "ms.");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Errore nella compattazione del log delle gang: " + e.getMessage());
+        }
+    }
+
+    private void compact() throws IOException {
+        File previousFile = logFile;
+        FileChannel previousChannel = channel;
+        MappedByteBuffer previousBuffer = buffer;
+        long previousRecordCount = recordCount;
+
+        int nextGeneration = generation + 1;
+        File nextFile = logFile(nextGeneration);
+        File tempFile = new File(directory, nextFile.getName() + ".tmp");
+
+        try {
+            Files.deleteIfExists(tempFile.toPath());
+            open(tempFile);
+            recordCount = 0;
+
+            for (StoredGang stored : gangs.values()) {
+                appendGangCreate(stored.id, stored.name, stored.ownerUUID, stored.createdAt);
+            }
+            // Per gang e nell'ordine di ingresso, che la rilettura del log conserva.
+            for (StoredGang stored : gangs.values()) {
+                for (UUID memberUUID : stored.members) {
+                    appendMemberSet(memberUUID, stored.id);
+                }
+            }
+            for (Map.Entry<UUID, String> entry : playerNames.entrySet()) {
+                appendPlayerName(entry.getKey(), entry.getValue());
+            }
+            buffer.force();
+            Files.move(tempFile.toPath(), nextFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (buffer != previousBuffer) {
+                unmap(buffer);
+            }
+            if (channel != previousChannel) {
+                channel.close();
+            }
+            Files.deleteIfExists(tempFile.toPath());
+            channel = previousChannel;
+            buffer = previousBuffer;
+            recordCount = previousRecordCount;
+            throw e;
+        }
+
+        generation = nextGeneration;
+        logFile = nextFile;
+
+        previousBuffer.force();
+        unmap(previousBuffer);
+        previousChannel.close();
+        if (!previousFile.delete()) {
+            previousFile.deleteOnExit();
+        }
+    }
+
+    private int findLatestGeneration() {
+        int latest = 1;
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith("gangs-") && name.endsWith(".log.tmp")) {
+                    file.delete();
+                } else if (name.startsWith("gangs-") && name.endsWith(".log")) {
+                    try {
+                        latest = Math.max(latest, Integer.parseInt(name.substring(6, name.length() - 4)));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith("gangs-") && name.endsWith(".log") && !name.equals(logFile(latest).getName())) {
+                    file.delete();
+                }
+            }
+        }
+
+        return latest;
+    }
+
+    private File logFile(int generation) {
+        return new File(directory, "gangs-" + generation + ".log");
+    }
+
+    private static class StoredGang {
+
+        private final int id;
+        private final UUID ownerUUID;
+        private final long createdAt;
+        private final Set<UUID> members = new LinkedHashSet<>();
+        private String name;
+
+        private StoredGang(int id, String name, UUID ownerUUID, long createdAt) {
+            this.id = id;
+            this.name = name;
+            this.ownerUUID = ownerUUID;
+            this.createdAt = createdAt;
+        }
+
+        private Gang toGang() {
+            Gang gang = new Gang(id, name, ownerUUID, createdAt);
+            for (UUID member : members) {
+                gang.addMember(member);
+            }
+            return gang;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package it.quick.azgangs.database;
+
+import it.quick.azgangs.models.Gang;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface GangStorage {
+
+    void initialize();
+
+    void close();
+
+    WriteBehindQueue getWriteQueue();
+
+    boolean flush(WriteBatch batch);
+
+    List<Gang> getAllGangs();
+
+    Gang getGangById(int gangId);
+
+    Gang getGangByName(String name);
+
+    Gang getGangByPlayerUUID(UUID playerUUID);
+
+    List<UUID> getGangMembers(int gangId);
+
+    int getHighestGangId();
+
+    int getGangMemberCount(int gangId);
+
+    boolean isPlayerInGang(UUID playerUUID);
+
+    Map<UUID, String> getPlayerNames(Collection<UUID> playerUUIDs);
+
+    default boolean createGang(int gangId, String name, UUID ownerUUID) {
+        WriteBatch batch = new WriteBatch();
+        batch.createGang(gangId, name, ownerUUID, System.currentTimeMillis());
+        batch.addMember(gangId, ownerUUID);
+        return flush(batch);
+    }
+
+    default boolean disbandGang(int gangId) {
+        WriteBatch batch = new WriteBatch();
+        batch.disbandGang(gangId);
+        return flush(batch);
+    }
+
+    default boolean renameGang(int gangId, String newName) {
+        WriteBatch batch = new WriteBatch();
+        batch.renameGang(gangId, newName);
+        return flush(batch);
+    }
+
+    default boolean addMember(int gangId, UUID playerUUID) {
+        WriteBatch batch = new WriteBatch();
+        batch.addMember(gangId, playerUUID);
+        return flush(batch);
+    }
+
+    default boolean removeMember(UUID playerUUID) {
+        WriteBatch batch = new WriteBatch();
+        batch.removeMember(playerUUID);
+        return flush(batch);
+    }
+}
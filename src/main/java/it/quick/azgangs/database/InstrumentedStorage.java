@@ -0,0 +1,147 @@
+package it.quick.azgangs.database;
+
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.Timer;
+import it.quick.azgangs.models.Gang;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Misura ogni chiamata allo storage. Le scritture passano dalla coda write-behind, che chiama flush()
+ * direttamente sullo storage reale: il flush viene misurato solo in {@link WriteBehindQueue}.
+ */
+public class InstrumentedStorage implements GangStorage {
+
+    private static final Timer GET_ALL_GANGS = Metrics.timer("storage.getAllGangs");
+    private static final Timer GET_GANG_BY_ID = Metrics.timer("storage.getGangById");
+    private static final Timer GET_GANG_BY_NAME = Metrics.timer("storage.getGangByName");
+    private static final Timer GET_GANG_BY_PLAYER = Metrics.timer("storage.getGangByPlayerUUID");
+    private static final Timer GET_GANG_MEMBERS = Metrics.timer("storage.getGangMembers");
+    private static final Timer GET_HIGHEST_GANG_ID = Metrics.timer("storage.getHighestGangId");
+    private static final Timer GET_GANG_MEMBER_COUNT = Metrics.timer("storage.getGangMemberCount");
+    private static final Timer IS_PLAYER_IN_GANG = Metrics.timer("storage.isPlayerInGang");
+    private static final Timer GET_PLAYER_NAMES = Metrics.timer("storage.getPlayerNames");
+
+    private final GangStorage delegate;
+
+    public InstrumentedStorage(GangStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    public GangStorage getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void initialize() {
+        delegate.initialize();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public WriteBehindQueue getWriteQueue() {
+        return delegate.getWriteQueue();
+    }
+
+    @Override
+    public boolean flush(WriteBatch batch) {
+        return delegate.flush(batch);
+    }
+
+    @Override
+    public List<Gang> getAllGangs() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllGangs();
+        } finally {
+            GET_ALL_GANGS.record(start);
+        }
+    }
+
+    @Override
+    public Gang getGangById(int gangId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getGangById(gangId);
+        } finally {
+            GET_GANG_BY_ID.record(start);
+        }
+    }
+
+    @Override
+    public Gang getGangByName(String name) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getGangByName(name);
+        } finally {
+            GET_GANG_BY_NAME.record(start);
+        }
+    }
+
+    @Override
+    public Gang getGangByPlayerUUID(UUID playerUUID) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getGangByPlayerUUID(playerUUID);
+        } finally {
+            GET_GANG_BY_PLAYER.record(start);
+        }
+    }
+
+    @Override
+    public List<UUID> getGangMembers(int gangId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getGangMembers(gangId);
+        } finally {
+            GET_GANG_MEMBERS.record(start);
+        }
+    }
+
+    @Override
+    public int getHighestGangId() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getHighestGangId();
+        } finally {
+            GET_HIGHEST_GANG_ID.record(start);
+        }
+    }
+
+    @Override
+    public int getGangMemberCount(int gangId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getGangMemberCount(gangId);
+        } finally {
+            GET_GANG_MEMBER_COUNT.record(start);
+        }
+    }
+
+    @Override
+    public boolean isPlayerInGang(UUID playerUUID) {
+        long start = System.nanoTime();
+        try {
+            return delegate.isPlayerInGang(playerUUID);
+        } finally {
+            IS_PLAYER_IN_GANG.record(start);
+        }
+    }
+
+    @Override
+    public Map<UUID, String> getPlayerNames(Collection<UUID> playerUUIDs) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getPlayerNames(playerUUIDs);
+        } finally {
+            GET_PLAYER_NAMES.record(start);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package it.quick.azgangs.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+public enum MemberKeyFormat {
+
+    LEGACY("player_uuid", "?") {
+        @Override
+        public String predicate(String alias) {
+            return alias + "player_uuid = ?";
+        }
+
+        @Override
+        public int bind(PreparedStatement statement, int index, UUID playerUUID) throws SQLException {
+            statement.setString(index, playerUUID.toString());
+            return index + 1;
+        }
+
+        @Override
+        public UUID read(ResultSet resultSet) throws SQLException {
+            return UUID.fromString(resultSet.getString("player_uuid"));
+        }
+    },
+
+    BINARY("player_uuid", "?") {
+        @Override
+        public String predicate(String alias) {
+            return alias + "player_uuid = ?";
+        }
+
+        @Override
+        public int bind(PreparedStatement statement, int index, UUID playerUUID) throws SQLException {
+            byte[] bytes = new byte[16];
+            long most = playerUUID.getMostSignificantBits();
+            long least = playerUUID.getLeastSignificantBits();
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (most >>> (56 - i * 8));
+                bytes[i + 8] = (byte) (least >>> (56 - i * 8));
+            }
+            statement.setBytes(index, bytes);
+            return index + 1;
+        }
+
+        @Override
+        public UUID read(ResultSet resultSet) throws SQLException {
+            byte[] bytes = resultSet.getBytes("player_uuid");
+            long most = 0;
+            long least = 0;
+            for (int i = 0; i < 8; i++) {
+                most = (most << 8) | (bytes[i] & 0xFF);
+                least = (least << 8) | (bytes[i + 8] & 0xFF);
+            }
+            return new UUID(most, least);
+        }
+    },
+
+    LONGS("uuid_most, uuid_least", "?, ?") {
+        @Override
+        public String predicate(String alias) {
+            return alias + "uuid_most = ? AND " + alias + "uuid_least = ?";
+        }
+
+        @Override
+        public int bind(PreparedStatement statement, int index, UUID playerUUID) throws SQLException {
+            statement.setLong(index, playerUUID.getMostSignificantBits());
+            statement.setLong(index + 1, playerUUID.getLeastSignificantBits());
+            return index + 2;
+        }
+
+        @Override
+        public UUID read(ResultSet resultSet) throws SQLException {
+            return new UUID(resultSet.getLong("uuid_most"), resultSet.getLong("uuid_least"));
+        }
+
+        // Il SQLite incluso nel server non supporta "(a, b) IN (...)": si filtra sulla prima colonna della chiave
+        // e le righe con uuid_least diverso vanno scartate da chi legge.
+        @Override
+        public String inPredicate(int count) {
+            return "uuid_most IN (" + repeat(count) + ")";
+        }
+
+        @Override
+        public int bindIn(PreparedStatement statement, int index, UUID playerUUID) throws SQLException {
+            statement.setLong(index, playerUUID.getMostSignificantBits());
+            return index + 1;
+        }
+    };
+
+    private final String columns;
+    private final String placeholders;
+
+    MemberKeyFormat(String columns, String placeholders) {
+        this.columns = columns;
+        this.placeholders = placeholders;
+    }
+
+    public String columns() {
+        return columns;
+    }
+
+    public String placeholders() {
+        return placeholders;
+    }
+
+    public abstract String predicate(String alias);
+
+    public abstract int bind(PreparedStatement statement, int index, UUID playerUUID) throws SQLException;
+
+    public abstract UUID read(ResultSet resultSet) throws SQLException;
+
+    /**
+     * Condizione per cercare piu' player in una query, da legare con {@link #bindIn}; puo' restituire righe in piu'.
+     */
+    public String inPredicate(int count) {
+        return columns + " IN (" + repeat(count) + ")";
+    }
+
+    public int bindIn(PreparedStatement statement, int index, UUID playerUUID) throws SQLException {
+        return bind(statement, index, playerUUID);
+    }
+
+    private static String repeat(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package it.quick.azgangs.database;
+
+public final class MemberTable {
+
+    private final String name;
+    private final MemberKeyFormat keys;
+
+    public MemberTable(String name, MemberKeyFormat keys) {
+        this.name = name;
+        this.keys = keys;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MemberKeyFormat getKeys() {
+        return keys;
+    }
+}
@@ -0,0 +1,33 @@
+package it.quick.azgangs.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Un passo dello schema. I passi offline vengono eseguiti in una transazione durante initialize(),
+ * quelli online (vedi {@link OnlineMigration}) vengono completati a blocchi in background.
+ */
+public abstract class Migration {
+
+    private final int version;
+    private final String description;
+
+    protected Migration(int version, String description) {
+        this.version = version;
+        this.description = description;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isOnline() {
+        return false;
+    }
+
+    public abstract void migrate(Connection connection) throws SQLException;
+}
@@ -0,0 +1,233 @@
+package it.quick.azgangs.database;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.Timer;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Avvolge il pool e misura ogni statement eseguito: le query oltre la soglia finiscono nel log con SQL e thread,
+ * quelle eseguite sul thread principale vengono segnalate con lo stack trace del chiamante.
+ * Connessioni e statement sono proxy dinamici, cosi' non serve implementare a mano le interfacce JDBC.
+ */
+public class MonitoredDataSource implements DataSource {
+
+    private static final Timer STATEMENT = Metrics.timer("jdbc.statement");
+    private static final long PRIMARY_THREAD_WARNING_INTERVAL_MILLIS = 60_000L;
+    private static final int MAX_LOGGED_SQL_LENGTH = 300;
+
+    private final DataSource delegate;
+    private final AZGangs plugin;
+    private final long slowQueryNanos;
+    private final boolean warnPrimaryThread;
+    private final Map<String, PrimaryThreadWarning> primaryThreadWarnings = new ConcurrentHashMap<>();
+
+    // All'avvio il caricamento sul thread principale e' previsto: il watchdog si attiva a server avviato.
+    private volatile boolean watchdogArmed;
+
+    public MonitoredDataSource(AZGangs plugin, DataSource delegate) {
+        this.plugin = plugin;
+        this.delegate = delegate;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfigManager().getSlowQueryMillis());
+        this.warnPrimaryThread = plugin.getConfigManager().isPrimaryThreadQueryWarningEnabled();
+    }
+
+    public void armWatchdog() {
+        watchdogArmed = true;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(delegate.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(delegate.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(MonitoredDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private void record(String sql, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        STATEMENT.record(startNanos);
+
+        boolean primaryThread = Metrics.isPrimaryThread();
+        if (primaryThread && warnPrimaryThread && watchdogArmed) {
+            warnPrimaryThread(sql, elapsed);
+        } else if (slowQueryNanos > 0 && elapsed >= slowQueryNanos) {
+            plugin.getLogger().warning("Query lenta (" + millis(elapsed) + "ms, thread " +
+                    Thread.currentThread().getName() + "): " + shorten(sql));
+        }
+    }
+
+    // Una query nel tick si ripete quasi sempre: lo stack trace esce al massimo una volta al minuto per SQL,
+    // con il numero di esecuzioni nel frattempo.
+    private void warnPrimaryThread(String sql, long elapsed) {
+        PrimaryThreadWarning warning = primaryThreadWarnings.computeIfAbsent(sql, key -> new PrimaryThreadWarning());
+        int suppressed = warning.count.getAndIncrement();
+
+        long now = System.currentTimeMillis();
+        long last = warning.lastLoggedMillis;
+        if (last != 0 && now - last < PRIMARY_THREAD_WARNING_INTERVAL_MILLIS) {
+            return;
+        }
+        warning.lastLoggedMillis = now;
+        warning.count.set(0);
+
+        String repeated = last != 0 && suppressed > 0 ? " (" + suppressed + " volte dall'ultimo avviso)" : "";
+        plugin.getLogger().log(Level.WARNING, "Query sul thread principale in " + millis(elapsed) + "ms" +
+                repeated + ": " + shorten(sql), new Throwable("Chiamata JDBC dal thread del server"));
+    }
+
+    private static String millis(long nanos) {
+        return String.valueOf(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    private static String shorten(String sql) {
+        if (sql == null) {
+            return "<batch>";
+        }
+        return sql.length() > MAX_LOGGED_SQL_LENGTH ? sql.substring(0, MAX_LOGGED_SQL_LENGTH) + "..." : sql;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class PrimaryThreadWarning {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile long lastLoggedMillis;
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = MonitoredDataSource.invoke(connection, method, args);
+
+            switch (method.getName()) {
+                case "createStatement":
+                    return wrapStatement(Statement.class, result, null);
+                case "prepareStatement":
+                    return wrapStatement(PreparedStatement.class, result, (String) args[0]);
+                case "prepareCall":
+                    return wrapStatement(CallableStatement.class, result, (String) args[0]);
+                default:
+                    return result;
+            }
+        }
+
+        private Object wrapStatement(Class<?> type, Object statement, String sql) {
+            return Proxy.newProxyInstance(MonitoredDataSource.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(statement, sql));
+        }
+    }
+
+    // Per i PreparedStatement l'SQL e' il template con i parametri '?'; per gli Statement semplici e' il testo eseguito.
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Object statement;
+        private final String template;
+        private String batchSql;
+
+        private StatementHandler(Object statement, String template) {
+            this.statement = statement;
+            this.template = template;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("addBatch") && args != null && args.length == 1 && batchSql == null) {
+                batchSql = (String) args[0];
+            }
+
+            if (!name.startsWith("execute")) {
+                return MonitoredDataSource.invoke(statement, method, args);
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : template;
+            if (sql == null) {
+                sql = batchSql;
+            }
+
+            long start = System.nanoTime();
+            try {
+                return MonitoredDataSource.invoke(statement, method, args);
+            } finally {
+                if (name.equals("executeBatch")) {
+                    batchSql = null;
+                }
+                record(sql, start);
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,38 @@
+package it.quick.azgangs.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Passo dello schema che copia i dati a blocchi limitati. {@link #migrate(Connection)} prepara le
+ * strutture durante initialize(); i blocchi girano poi in background, ognuno nella sua transazione
+ * insieme al salvataggio del cursore, quindi la migrazione riprende da dove si era fermata.
+ */
+public abstract class OnlineMigration extends Migration {
+
+    protected OnlineMigration(int version, String description) {
+        super(version, description);
+    }
+
+    @Override
+    public final boolean isOnline() {
+        return true;
+    }
+
+    /**
+     * Chiamato ogni volta che la copia parte o riprende, prima del primo blocco.
+     */
+    public abstract void onStart();
+
+    /**
+     * Ritorna true se i dati sono gia' nello stato finale e non serve copiare nulla.
+     */
+    public abstract boolean isComplete(Connection connection) throws SQLException;
+
+    /**
+     * Copia al massimo {@code limit} righe dopo {@code cursor}; ritorna il nuovo cursore o -1 se ha finito.
+     */
+    public abstract long migrateChunk(Connection connection, long cursor, int limit) throws SQLException;
+
+    public abstract void finish(Connection connection) throws SQLException;
+}
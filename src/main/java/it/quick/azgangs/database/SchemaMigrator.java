@@ -0,0 +1,263 @@
+package it.quick.azgangs.database;
+
+import it.quick.azgangs.AZGangs;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class SchemaMigrator {
+
+    // Anche con chunk-pause-ms a 0 un database irraggiungibile non deve essere ritentato in un ciclo continuo.
+    private static final long MIN_RETRY_DELAY_MILLIS = 5000L;
+
+    private final AZGangs plugin;
+    private final DataSource dataSource;
+    private final String versionTable;
+    private final String progressTable;
+    private final int chunkSize;
+    private final long chunkPauseMillis;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    private ScheduledExecutorService executor;
+    private OnlineMigration runningMigration;
+    private long migratedRows;
+    private volatile boolean stopped;
+
+    public SchemaMigrator(AZGangs plugin, DataSource dataSource, String tablePrefix) {
+        this.plugin = plugin;
+        this.dataSource = dataSource;
+        this.versionTable = tablePrefix + "schema_version";
+        this.progressTable = tablePrefix + "schema_progress";
+        this.chunkSize = plugin.getConfigManager().getMigrationChunkSize();
+        this.chunkPauseMillis = plugin.getConfigManager().getMigrationChunkPauseMillis();
+    }
+
+    public void register(Migration migration) {
+        migrations.add(migration);
+        migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    }
+
+    public void migrate(ScheduledExecutorService executor) throws SQLException {
+        this.executor = executor;
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + versionTable + " (" +
+                    "version INTEGER NOT NULL" +
+                    ")");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + progressTable + " (" +
+                    "version INTEGER NOT NULL PRIMARY KEY, " +
+                    "cursor_position BIGINT NOT NULL" +
+                    ")");
+        }
+
+        runPending();
+    }
+
+    // Le migrazioni offline successive a una online vengono applicate subito, senza aspettare la fine del
+    // backfill in background: non devono quindi dipendere dalle tabelle che la migrazione online crea o rimuove.
+    private void runPending() throws SQLException {
+        Set<Integer> applied = getAppliedVersions();
+        OnlineMigration online = null;
+
+        for (Migration migration : migrations) {
+            if (applied.contains(migration.getVersion())) {
+                continue;
+            }
+
+            if (migration.isOnline()) {
+                if (online == null) {
+                    online = (OnlineMigration) migration;
+                }
+                continue;
+            }
+
+            inTransaction(connection -> {
+                migration.migrate(connection);
+                markApplied(connection, migration.getVersion());
+            });
+            plugin.getLogger().info("Migrazione v" + migration.getVersion() + " applicata: " + migration.getDescription());
+        }
+
+        if (online != null) {
+            startOnline(online);
+        }
+    }
+
+    private void startOnline(OnlineMigration migration) throws SQLException {
+        long[] cursor = {-1};
+
+        inTransaction(connection -> {
+            if (migration.isComplete(connection)) {
+                markApplied(connection, migration.getVersion());
+                return;
+            }
+
+            cursor[0] = getCursor(connection, migration.getVersion());
+            if (cursor[0] < 0) {
+                migration.migrate(connection);
+                cursor[0] = 0;
+                setCursor(connection, migration.getVersion(), 0);
+            }
+        });
+
+        if (cursor[0] < 0) {
+            plugin.getLogger().info("Migrazione v" + migration.getVersion() + " gia' completa: " + migration.getDescription());
+            runPending();
+            return;
+        }
+
+        runningMigration = migration;
+        migratedRows = 0;
+        migration.onStart();
+        plugin.getLogger().info("Migrazione online v" + migration.getVersion() + " avviata in background: " +
+                migration.getDescription());
+        schedule(() -> runChunk(cursor[0]), 0);
+    }
+
+    private void runChunk(long cursor) {
+        if (stopped) {
+            return;
+        }
+
+        OnlineMigration migration = runningMigration;
+        long[] next = {cursor};
+
+        try {
+            inTransaction(connection -> {
+                next[0] = migration.migrateChunk(connection, cursor, chunkSize);
+                if (next[0] >= 0) {
+                    setCursor(connection, migration.getVersion(), next[0]);
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Errore nella migrazione v" + migration.getVersion() + ", nuovo tentativo: " + e.getMessage());
+            schedule(() -> runChunk(cursor), Math.max(MIN_RETRY_DELAY_MILLIS, chunkPauseMillis * 100));
+            return;
+        }
+
+        if (next[0] >= 0) {
+            migratedRows += chunkSize;
+            schedule(() -> runChunk(next[0]), chunkPauseMillis);
+            return;
+        }
+
+        try {
+            inTransaction(connection -> {
+                migration.finish(connection);
+                markApplied(connection, migration.getVersion());
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM " + progressTable + " WHERE version = ?")) {
+                    statement.setInt(1, migration.getVersion());
+                    statement.executeUpdate();
+                }
+            });
+            runningMigration = null;
+            plugin.getLogger().info("Migrazione online v" + migration.getVersion() + " completata (~" +
+                    migratedRows + " righe).");
+            runPending();
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Errore nel completamento della migrazione v" + migration.getVersion() + ": " + e.getMessage());
+        }
+    }
+
+    private void schedule(Runnable task, long delayMillis) {
+        try {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            stopped = true;
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isMigrating() {
+        return runningMigration != null;
+    }
+
+    private Set<Integer> getAppliedVersions() throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version FROM " + versionTable)) {
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt(1));
+            }
+        }
+
+        return versions;
+    }
+
+    private void markApplied(Connection connection, int version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO " + versionTable + " (version) VALUES (?)")) {
+            statement.setInt(1, version);
+            statement.executeUpdate();
+        }
+    }
+
+    private long getCursor(Connection connection, int version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT cursor_position FROM " + progressTable + " WHERE version = ?")) {
+            statement.setInt(1, version);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : -1;
+            }
+        }
+    }
+
+    private void setCursor(Connection connection, int version, long cursor) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE " + progressTable + " SET cursor_position = ? WHERE version = ?")) {
+            update.setLong(1, cursor);
+            update.setInt(2, version);
+
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + progressTable + " (version, cursor_position) VALUES (?, ?)")) {
+            insert.setInt(1, version);
+            insert.setLong(2, cursor);
+            insert.executeUpdate();
+        }
+    }
+
+    private void inTransaction(SqlWork work) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                work.run(connection);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private interface SqlWork {
+        void run(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,56 @@
+package it.quick.azgangs.database;
+
+public enum SqlDialect {
+
+    MYSQL("AUTO_INCREMENT", "INSERT IGNORE INTO ", MemberKeyFormat.BINARY,
+            "player_uuid BINARY(16) NOT NULL", ""),
+    SQLITE("AUTOINCREMENT", "INSERT OR IGNORE INTO ", MemberKeyFormat.LONGS,
+            "uuid_most BIGINT NOT NULL, uuid_least BIGINT NOT NULL", " WITHOUT ROWID");
+
+    private final String autoIncrement;
+    private final String insertIgnore;
+    private final MemberKeyFormat compactKeys;
+    private final String compactKeyDefinition;
+    private final String compactTableOptions;
+
+    SqlDialect(String autoIncrement, String insertIgnore, MemberKeyFormat compactKeys,
+               String compactKeyDefinition, String compactTableOptions) {
+        this.autoIncrement = autoIncrement;
+        this.insertIgnore = insertIgnore;
+        this.compactKeys = compactKeys;
+        this.compactKeyDefinition = compactKeyDefinition;
+        this.compactTableOptions = compactTableOptions;
+    }
+
+    public static SqlDialect fromType(String type) {
+        return type.equalsIgnoreCase("mysql") ? MYSQL : SQLITE;
+    }
+
+    public String autoIncrement() {
+        return autoIncrement;
+    }
+
+    public String insertIgnore() {
+        return insertIgnore;
+    }
+
+    public MemberKeyFormat compactKeys() {
+        return compactKeys;
+    }
+
+    public String compactKeyDefinition() {
+        return compactKeyDefinition;
+    }
+
+    public String compactTableOptions() {
+        return compactTableOptions;
+    }
+
+    public String upsert(String table, String columns, String placeholders, String updatedColumn) {
+        if (this == MYSQL) {
+            return "INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ") " +
+                    "ON DUPLICATE KEY UPDATE " + updatedColumn + " = VALUES(" + updatedColumn + ")";
+        }
+        return "INSERT OR REPLACE INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")";
+    }
+}
@@ -0,0 +1,242 @@
+package it.quick.azgangs.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Modifiche in attesa di una finestra di flush, gia' ridotte allo stato finale di ogni gang e di ogni player.
+ */
+public class WriteBatch {
+
+    public static final int NO_GANG = 0;
+
+    private final Map<Integer, GangWrite> gangWrites = new LinkedHashMap<>();
+    private final Map<UUID, Integer> memberWrites = new LinkedHashMap<>();
+    private final Map<UUID, String> playerNames = new LinkedHashMap<>();
+    // Le callback sono legate alla gang (id) o al player (UUID) della modifica, cosi' se una sola modifica
+    // fallisce viene avvisato solo chi l'ha richiesta.
+    private final Map<Object, List<Consumer<Boolean>>> callbacks = new LinkedHashMap<>();
+    private int submittedOperations;
+    private final Set<Object> keys = new LinkedHashSet<>();
+
+    void createGang(int gangId, String name, UUID ownerUUID, long createdAt) {
+        GangWrite write = new GangWrite(gangId);
+        write.created = true;
+        write.name = name;
+        write.ownerUUID = ownerUUID;
+        write.createdAt = createdAt;
+        gangWrites.put(gangId, write);
+        submittedOperations++;
+    }
+
+    void renameGang(int gangId, String newName) {
+        GangWrite write = gangWrites.computeIfAbsent(gangId, GangWrite::new);
+        if (!write.disbanded) {
+            write.name = newName;
+        }
+        submittedOperations++;
+    }
+
+    void disbandGang(int gangId) {
+        GangWrite write = gangWrites.get(gangId);
+
+        if (write != null && write.created) {
+            gangWrites.remove(gangId);
+        } else {
+            write = gangWrites.computeIfAbsent(gangId, GangWrite::new);
+            write.disbanded = true;
+            write.name = null;
+        }
+
+        for (Map.Entry<UUID, Integer> entry : memberWrites.entrySet()) {
+            if (entry.getValue() == gangId) {
+                entry.setValue(NO_GANG);
+            }
+        }
+        submittedOperations++;
+    }
+
+    void addMember(int gangId, UUID playerUUID) {
+        memberWrites.put(playerUUID, gangId);
+        submittedOperations++;
+    }
+
+    void removeMember(UUID playerUUID) {
+        memberWrites.put(playerUUID, NO_GANG);
+        submittedOperations++;
+    }
+
+    void updatePlayerName(UUID playerUUID, String name) {
+        playerNames.put(playerUUID, name);
+        submittedOperations++;
+    }
+
+    void addCallback(Object key, Consumer<Boolean> callback) {
+        if (callback != null) {
+            callbacks.computeIfAbsent(key, k -> new ArrayList<>()).add(callback);
+        }
+    }
+
+    public Collection<GangWrite> getGangWrites() {
+        return gangWrites.values();
+    }
+
+    public Map<UUID, Integer> getMemberWrites() {
+        return memberWrites;
+    }
+
+    public Map<UUID, String> getPlayerNames() {
+        return playerNames;
+    }
+
+    boolean hasCallbacks() {
+        return !callbacks.isEmpty();
+    }
+
+    /**
+     * Esegue le callback: falliscono solo quelle legate alle chiavi in failedKeys.
+     */
+    void complete(Set<Object> failedKeys) {
+        for (Map.Entry<Object, List<Consumer<Boolean>>> entry : callbacks.entrySet()) {
+            boolean success = !failedKeys.contains(entry.getKey());
+            for (Consumer<Boolean> callback : entry.getValue()) {
+                callback.accept(success);
+            }
+        }
+    }
+
+    /**
+     * Una modifica per batch, nell'ordine in cui lo storage le scrive: prima le gang, poi i membri, poi i nomi.
+     * Serve a isolare la modifica che fa fallire la transazione senza perdere le altre. I membri di una gang creata
+     * nello stesso batch restano con la creazione: se questa viene scartata non devono restare righe orfane.
+     */
+    List<WriteBatch> split() {
+        List<WriteBatch> parts = new ArrayList<>();
+        Map<Integer, WriteBatch> createdParts = new HashMap<>();
+
+        for (GangWrite write : gangWrites.values()) {
+            WriteBatch part = part(parts, write.gangId);
+            part.gangWrites.put(write.gangId, write);
+            if (write.created) {
+                createdParts.put(write.gangId, part);
+            }
+        }
+        for (Map.Entry<UUID, Integer> entry : memberWrites.entrySet()) {
+            WriteBatch part = createdParts.get(entry.getValue());
+            if (part == null) {
+                part = part(parts, entry.getKey());
+            } else {
+                part.keys.add(entry.getKey());
+                part.submittedOperations++;
+            }
+            part.memberWrites.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<UUID, String> entry : playerNames.entrySet()) {
+            WriteBatch part = part(parts, null);
+            part.playerNames.put(entry.getKey(), entry.getValue());
+        }
+        return parts;
+    }
+
+    private static WriteBatch part(List<WriteBatch> parts, Object key) {
+        WriteBatch part = new WriteBatch();
+        if (key != null) {
+            part.keys.add(key);
+        }
+        part.submittedOperations = 1;
+        parts.add(part);
+        return part;
+    }
+
+    // Chiavi delle modifiche di un batch prodotto da split(): id della gang e UUID dei player.
+    Set<Object> getKeys() {
+        return keys;
+    }
+
+    String describe() {
+        List<String> descriptions = new ArrayList<>();
+        for (GangWrite write : gangWrites.values()) {
+            if (write.created) {
+                descriptions.add("gang " + write.gangId + " creata come '" + write.name + "'");
+            } else if (write.disbanded) {
+                descriptions.add("gang " + write.gangId + " sciolta");
+            } else if (write.name != null) {
+                descriptions.add("gang " + write.gangId + " rinominata in '" + write.name + "'");
+            }
+        }
+        for (Map.Entry<UUID, Integer> entry : memberWrites.entrySet()) {
+            descriptions.add(entry.getValue() == NO_GANG ? "membro " + entry.getKey() + " rimosso dalla gang" :
+                    "membro " + entry.getKey() + " nella gang " + entry.getValue());
+        }
+        for (Map.Entry<UUID, String> entry : playerNames.entrySet()) {
+            descriptions.add("nome di " + entry.getKey() + " = '" + entry.getValue() + "'");
+        }
+        return String.join(", ", descriptions);
+    }
+
+    public int getSubmittedOperations() {
+        return submittedOperations;
+    }
+
+    public int size() {
+        int size = memberWrites.size() + playerNames.size();
+        for (GangWrite write : gangWrites.values()) {
+            size += write.disbanded || write.created || write.name != null ? 1 : 0;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return submittedOperations == 0;
+    }
+
+    public static class GangWrite {
+
+        private final int gangId;
+        private boolean created;
+        private boolean disbanded;
+        private String name;
+        private UUID ownerUUID;
+        private long createdAt;
+
+        private GangWrite(int gangId) {
+            this.gangId = gangId;
+        }
+
+        public int getGangId() {
+            return gangId;
+        }
+
+        public boolean isCreated() {
+            return created;
+        }
+
+        public boolean isDisbanded() {
+            return disbanded;
+        }
+
+        public boolean isRenamed() {
+            return !created && name != null;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public UUID getOwnerUUID() {
+            return ownerUUID;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package it.quick.azgangs.database;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.Timer;
+import org.bukkit.Bukkit;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Persiste le modifiche alle gang in background, dopo che sono gia' state applicate in memoria.
+ * Le modifiche vengono raccolte per una finestra di flush, ridotte allo stato finale e scritte
+ * in un'unica transazione; i flush sono eseguiti uno alla volta, quindi l'ordine e' preservato.
+ * Un batch fallito viene riprovato prima di quelli successivi; se continua a fallire ogni modifica viene riprovata
+ * da sola e solo quelle rifiutate dallo storage vengono scartate. Se falliscono tutte lo storage e' irraggiungibile:
+ * il batch resta in coda e si riprova con attese crescenti, senza perdere nulla.
+ */
+public class WriteBehindQueue {
+
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+    private static final long MIN_RETRY_DELAY_MILLIS = 1_000L;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000L;
+    private static final Timer FLUSH = Metrics.timer("storage.flush");
+
+    private final AZGangs plugin;
+    private final GangStorage storage;
+    private final ScheduledExecutorService executor;
+    private final long flushIntervalMillis;
+    private final boolean logFlushes;
+    private final Object flushLock = new Object();
+
+    private WriteBatch pending = new WriteBatch();
+    private boolean flushScheduled;
+    private volatile WriteBatch retrying;
+    // Un batch tolto da pending ma non ancora scritto: chi legge dallo storage vedrebbe ancora i dati precedenti.
+    private boolean inFlight;
+    private int failedAttempts;
+
+    private final AtomicLong totalFlushes = new AtomicLong();
+    private final AtomicLong totalOperations = new AtomicLong();
+    private final AtomicLong totalStatements = new AtomicLong();
+    private final AtomicLong totalDropped = new AtomicLong();
+    private volatile int lastFlushSize;
+    private volatile long lastFlushMillis;
+
+    public WriteBehindQueue(AZGangs plugin, GangStorage storage, ScheduledExecutorService executor) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.executor = executor;
+        this.flushIntervalMillis = plugin.getConfigManager().getFlushIntervalMillis();
+        this.logFlushes = plugin.getConfigManager().isFlushLoggingEnabled();
+    }
+
+    public synchronized void createGang(int gangId, String name, UUID ownerUUID, long createdAt,
+                                        Consumer<Boolean> callback) {
+        pending.createGang(gangId, name, ownerUUID, createdAt);
+        enqueued(gangId, callback);
+    }
+
+    public synchronized void renameGang(int gangId, String newName, Consumer<Boolean> callback) {
+        pending.renameGang(gangId, newName);
+        enqueued(gangId, callback);
+    }
+
+    public synchronized void disbandGang(int gangId, Consumer<Boolean> callback) {
+        pending.disbandGang(gangId);
+        enqueued(gangId, callback);
+    }
+
+    public synchronized void addMember(int gangId, UUID playerUUID, Consumer<Boolean> callback) {
+        pending.addMember(gangId, playerUUID);
+        enqueued(playerUUID, callback);
+    }
+
+    public synchronized void removeMember(UUID playerUUID, Consumer<Boolean> callback) {
+        pending.removeMember(playerUUID);
+        enqueued(playerUUID, callback);
+    }
+
+    public synchronized void updatePlayerName(UUID playerUUID, String name) {
+        pending.updatePlayerName(playerUUID, name);
+        enqueued(playerUUID, null);
+    }
+
+    private void enqueued(Object key, Consumer<Boolean> callback) {
+        pending.addCallback(key, callback);
+
+        // Durante un nuovo tentativo il flush e' gia' programmato dal backoff, che poi scrive anche pending:
+        // un flush in anticipo riprenderebbe il batch fallito prima della fine dell'attesa.
+        if (!flushScheduled && retrying == null) {
+            flushScheduled = true;
+            executor.schedule(this::scheduledFlush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Un flush programmato prima che un batch fallisse non deve anticipare il backoff.
+    private void scheduledFlush() {
+        synchronized (this) {
+            if (retrying != null) {
+                flushScheduled = false;
+                return;
+            }
+        }
+        flush();
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            while (true) {
+                WriteBatch batch = retrying;
+                boolean retry = batch != null;
+
+                if (!retry) {
+                    synchronized (this) {
+                        batch = pending;
+                        pending = new WriteBatch();
+                        flushScheduled = false;
+                        inFlight = !batch.isEmpty();
+                    }
+
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                }
+
+                boolean written = false;
+                try {
+                    written = write(batch);
+                } finally {
+                    synchronized (this) {
+                        retrying = written ? null : batch;
+                        inFlight = false;
+                    }
+                }
+
+                if (!written) {
+                    scheduleRetry();
+                    return;
+                }
+
+                // Le modifiche arrivate durante i tentativi sono rimaste in pending: si scrivono subito dopo.
+                if (!retry) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Restituisce false se il batch va riprovato per intero.
+    private boolean write(WriteBatch batch) {
+        long start = System.nanoTime();
+        boolean success = storage.flush(batch);
+        FLUSH.record(start);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        if (success) {
+            failedAttempts = 0;
+            completed(batch, batch.getSubmittedOperations(), batch.size(), elapsedMillis, Collections.emptySet());
+
+            if (logFlushes) {
+                plugin.getLogger().info("Flush: " + batch.getSubmittedOperations() + " operazioni ridotte a " +
+                        batch.size() + " scritture in " + elapsedMillis + "ms.");
+            }
+            return true;
+        }
+
+        if (++failedAttempts < MAX_FLUSH_ATTEMPTS) {
+            plugin.getLogger().warning("Flush di " + batch.size() + " scritture fallito, nuovo tentativo (" +
+                    failedAttempts + "/" + MAX_FLUSH_ATTEMPTS + ").");
+            return false;
+        }
+
+        List<WriteBatch> parts = batch.split();
+        Set<WriteBatch> failed = new HashSet<>();
+        for (WriteBatch part : parts) {
+            if (!storage.flush(part)) {
+                failed.add(part);
+            }
+        }
+
+        if (!parts.isEmpty() && failed.size() == parts.size()) {
+            plugin.getLogger().warning("Storage non raggiungibile, " + batch.size() +
+                    " scritture restano in coda e verranno riprovate.");
+            return false;
+        }
+
+        failedAttempts = 0;
+        Set<Object> failedKeys = new HashSet<>();
+        int writtenOperations = 0;
+        int writtenStatements = 0;
+        for (WriteBatch part : parts) {
+            if (!failed.contains(part)) {
+                writtenOperations += part.getSubmittedOperations();
+                writtenStatements += part.size();
+                continue;
+            }
+
+            failedKeys.addAll(part.getKeys());
+            totalDropped.addAndGet(part.getSubmittedOperations());
+            plugin.getLogger().severe("Modifica rifiutata dallo storage e scartata: " + part.describe() +
+                    ". Usa /gang resync per riallineare la memoria al database.");
+        }
+        completed(batch, writtenOperations, writtenStatements, elapsedMillis, failedKeys);
+        return true;
+    }
+
+    private void completed(WriteBatch batch, int operations, int statements, long elapsedMillis,
+                           Set<Object> failedKeys) {
+        totalFlushes.incrementAndGet();
+        totalOperations.addAndGet(operations);
+        totalStatements.addAndGet(statements);
+        lastFlushSize = statements;
+        lastFlushMillis = elapsedMillis;
+
+        if (batch.hasCallbacks() && plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> batch.complete(failedKeys));
+        }
+    }
+
+    private void scheduleRetry() {
+        long delay = Math.min(MAX_RETRY_DELAY_MILLIS,
+                Math.max(MIN_RETRY_DELAY_MILLIS, flushIntervalMillis << Math.min(failedAttempts, 10)));
+        try {
+            executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // In chiusura: close() riprova direttamente.
+        }
+    }
+
+    public long getTotalFlushes() {
+        return totalFlushes.get();
+    }
+
+    public long getTotalOperations() {
+        return totalOperations.get();
+    }
+
+    public long getTotalStatements() {
+        return totalStatements.get();
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    public long getTotalDropped() {
+        return totalDropped.get();
+    }
+
+    // Un batch fallito e' in attesa di un nuovo tentativo: lo storage non ha ancora accettato tutte le scritture.
+    public boolean isRetrying() {
+        return retrying != null;
+    }
+
+    public synchronized boolean hasPendingWrites() {
+        return !pending.isEmpty() || inFlight || retrying != null;
+    }
+}
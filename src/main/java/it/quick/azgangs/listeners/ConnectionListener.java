@@ -0,0 +1,38 @@
+package it.quick.azgangs.listeners;
+
+import it.quick.azgangs.AZGangs;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+public class ConnectionListener implements Listener {
+
+    private final AZGangs plugin;
+
+    public ConnectionListener(AZGangs plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            plugin.getNameCacheManager().preloadPlayer(event.getUniqueId());
+            plugin.getGangManager().preloadPlayer(event.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getNameCacheManager().playerJoined(event.getPlayer());
+        plugin.getGangManager().playerJoined(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getGangManager().playerQuit(event.getPlayer());
+        plugin.getGangChatManager().playerQuit(event.getPlayer().getUniqueId());
+    }
+}
@@ -1,6 +1,8 @@
 package it.quick.azgangs.listeners;
 
 import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.Timer;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -9,6 +11,8 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 
 public class DamageListener implements Listener {
 
+    private static final Timer CHECK = Metrics.timer("damage.check");
+
     private final AZGangs plugin;
 
     public DamageListener(AZGangs plugin) {
@@ -25,12 +29,14 @@ public class DamageListener implements Listener {
             return;
         }
 
+        long start = System.nanoTime();
         Player victim = (Player) event.getEntity();
         Player attacker = (Player) event.getDamager();
 
-        if (plugin.getGangManager().arePlayersInSameGang(victim.getUniqueId(), attacker.getUniqueId())) {
+        if (plugin.getGangManager().areOnlinePlayersInSameGang(victim.getUniqueId(), attacker.getUniqueId())) {
             event.setCancelled(true);
 
         }
+        CHECK.record(start);
     }
 }
\ No newline at end of file
@@ -2,9 +2,9 @@ package it.quick.azgangs.listeners;
 
 import it.quick.azgangs.AZGangs;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
-import org.bukkit.entity.Player;
 
 public class GangChatListener implements Listener {
     private final AZGangs plugin;
@@ -13,12 +13,9 @@ public class GangChatListener implements Listener {
         this.plugin = plugin;
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public void onPlayerChat(AsyncPlayerChatEvent event) {
-        Player player = event.getPlayer();
-        String message = event.getMessage();
-
-        if (plugin.getGangCommand().handleGangChatMessage(player, message)) {
+        if (plugin.getGangChatManager().handleMessage(event.getPlayer(), event.getMessage())) {
             event.setCancelled(true);
         }
     }
@@ -0,0 +1,105 @@
+package it.quick.azgangs.managers;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.Timer;
+import it.quick.azgangs.models.Gang;
+import it.quick.azgangs.utils.ConfigManager;
+import it.quick.azgangs.utils.MessagePlaceholder;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chat di gang: gira interamente sul thread di AsyncPlayerChatEvent. Ogni messaggio viene formattato una volta
+ * e inviato solo ai membri online della gang, con un limite di messaggi per gang.
+ */
+public class GangChatManager {
+
+    private static final Timer FAN_OUT = Metrics.timer("chat.fanOut");
+
+    private final AZGangs plugin;
+    private final Set<UUID> toggled = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    public GangChatManager(AZGangs plugin) {
+        this.plugin = plugin;
+    }
+
+    public boolean toggle(UUID playerUUID) {
+        if (toggled.remove(playerUUID)) {
+            return false;
+        }
+        toggled.add(playerUUID);
+        return true;
+    }
+
+    public boolean isEnabled(UUID playerUUID) {
+        return toggled.contains(playerUUID);
+    }
+
+    public void playerQuit(UUID playerUUID) {
+        toggled.remove(playerUUID);
+    }
+
+    // Chiamato quando una gang esce dalla memoria (sciolta o rimossa dalla cache online).
+    public void gangRemoved(int gangId) {
+        rateLimiters.remove(gangId);
+    }
+
+    /**
+     * Invia il messaggio alla gang del player se ha la chat di gang attiva; restituisce true se il messaggio
+     * e' stato gestito e non deve arrivare alla chat pubblica.
+     */
+    public boolean handleMessage(Player player, String message) {
+        UUID playerUUID = player.getUniqueId();
+
+        if (!toggled.contains(playerUUID)) {
+            return false;
+        }
+
+        Gang gang = plugin.getGangManager().getPlayerGang(playerUUID);
+
+        if (gang == null) {
+            toggled.remove(playerUUID);
+            return false;
+        }
+
+        ConfigManager config = plugin.getConfigManager();
+        RateLimiter limiter = rateLimiters.computeIfAbsent(gang.getId(), id -> new RateLimiter());
+        if (!limiter.tryAcquire(System.currentTimeMillis(),
+                config.getGangChatRateLimitMessages(), config.getGangChatRateLimitWindowMillis())) {
+            player.sendMessage(config.getMessage("gang-chat-rate-limited"));
+            return true;
+        }
+
+        long start = System.nanoTime();
+        String formatted = config.getGangChatFormat().render(MessagePlaceholder.PLAYER_NAME, player.getName(),
+                MessagePlaceholder.MESSAGE, message);
+
+        for (Player member : plugin.getGangManager().getOnlineMembers(gang.getId())) {
+            member.sendMessage(formatted);
+        }
+        FAN_OUT.record(start);
+
+        return true;
+    }
+
+    // Finestra fissa: al massimo maxMessages messaggi per gang ogni windowMillis.
+    private static class RateLimiter {
+
+        private long windowStart;
+        private int count;
+
+        private synchronized boolean tryAcquire(long now, int maxMessages, long windowMillis) {
+            if (now - windowStart >= windowMillis) {
+                windowStart = now;
+                count = 0;
+            }
+            return ++count <= maxMessages;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package it.quick.azgangs.managers;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.models.Gang;
+import it.quick.azgangs.utils.MessagePlaceholder;
+import it.quick.azgangs.utils.MessageTemplate;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Pagine di /gang list, ordinate e formattate in asincrono e tenute in cache finche' le gang non cambiano.
+ * Con la cache online l'elenco viene letto dallo storage, cosi' comprende anche le gang senza membri online.
+ */
+public class GangListManager {
+
+    public enum SortOrder {
+        NAME(Comparator.comparing((Row row) -> row.name, String.CASE_INSENSITIVE_ORDER)),
+        MEMBERS(Comparator.comparingInt((Row row) -> -row.memberCount)
+                .thenComparing(row -> row.name, String.CASE_INSENSITIVE_ORDER)),
+        CREATED(Comparator.comparingLong((Row row) -> row.createdAt).thenComparingInt(row -> row.id));
+
+        private final Comparator<Row> comparator;
+
+        SortOrder(Comparator<Row> comparator) {
+            this.comparator = comparator;
+        }
+
+        public static SortOrder fromString(String value) {
+            for (SortOrder order : values()) {
+                if (order.name().equalsIgnoreCase(value)) {
+                    return order;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final AZGangs plugin;
+    private final Map<SortOrder, RenderedList> cache = new ConcurrentHashMap<>();
+    // Richieste in attesa della costruzione in corso, per ordinamento; usata solo dal thread principale.
+    private final Map<SortOrder, List<PendingPage>> building = new EnumMap<>(SortOrder.class);
+
+    public GangListManager(AZGangs plugin) {
+        this.plugin = plugin;
+    }
+
+    public void sendPage(Player player, int page, SortOrder order) {
+        GangManager gangManager = plugin.getGangManager();
+
+        RenderedList cached = cache.get(order);
+        if (cached != null && cached.generation == gangManager.getGeneration()) {
+            send(player, cached, page);
+            return;
+        }
+
+        // Una costruzione alla volta per ordinamento: chi chiede la lista nel frattempo riceve lo stesso risultato.
+        List<PendingPage> waiting = building.get(order);
+        if (waiting != null) {
+            waiting.add(new PendingPage(player, page));
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(new PendingPage(player, page));
+        building.put(order, waiting);
+
+        MessageTemplate entryFormat = plugin.getConfigManager().getTemplateNoPrefix("gang-list-entry");
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            RenderedList rendered = null;
+            try {
+                rendered = render(gangManager, order, entryFormat);
+                cache.merge(order, rendered, (current, next) -> current.generation > next.generation ? current : next);
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Impossibile costruire /gang list", e);
+            } finally {
+                RenderedList result = rendered;
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    for (PendingPage pending : building.remove(order)) {
+                        if (result != null && pending.player.isOnline()) {
+                            send(pending.player, result, pending.page);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private RenderedList render(GangManager gangManager, SortOrder order, MessageTemplate entryFormat) {
+        long generation = gangManager.getGeneration();
+
+        // Valori letti una sola volta: l'ordinamento resta coerente anche se una gang cambia nel frattempo.
+        List<Row> rows = new ArrayList<>();
+        List<UUID> owners = new ArrayList<>();
+        for (Gang gang : gangManager.loadAllGangs()) {
+            rows.add(new Row(gang));
+            owners.add(gang.getOwnerUUID());
+        }
+        rows.sort(order.comparator);
+
+        Map<UUID, String> ownerNames = plugin.getNameCacheManager().loadNow(owners);
+
+        String[] lines = new String[rows.size()];
+        for (int i = 0; i < lines.length; i++) {
+            Row row = rows.get(i);
+            lines[i] = entryFormat.render(
+                    MessagePlaceholder.GANG_NAME, row.name,
+                    MessagePlaceholder.OWNER, ownerNames.getOrDefault(row.ownerUUID, "Unknown"),
+                    MessagePlaceholder.MEMBER_COUNT, String.valueOf(row.memberCount));
+        }
+        return new RenderedList(generation, lines);
+    }
+
+    // Dopo /gang reload il formato delle righe puo' essere cambiato anche se le gang no.
+    public void invalidate() {
+        cache.clear();
+    }
+
+    private void send(Player player, RenderedList list, int page) {
+        if (list.lines.length == 0) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-gangs"));
+            return;
+        }
+
+        int pageSize = plugin.getConfigManager().getListPageSize();
+        int pages = (list.lines.length + pageSize - 1) / pageSize;
+        int current = Math.max(1, Math.min(page, pages));
+
+        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-list-header",
+                MessagePlaceholder.PAGE, String.valueOf(current), MessagePlaceholder.PAGES, String.valueOf(pages)));
+
+        int end = Math.min(current * pageSize, list.lines.length);
+        for (int i = (current - 1) * pageSize; i < end; i++) {
+            player.sendMessage(list.lines[i]);
+        }
+
+        player.sendMessage(plugin.getConfigManager().getMessageNoPrefix("gang-list-footer"));
+    }
+
+    private static class Row {
+
+        private final int id;
+        private final String name;
+        private final int memberCount;
+        private final long createdAt;
+        private final UUID ownerUUID;
+
+        private Row(Gang gang) {
+            this.id = gang.getId();
+            this.name = gang.getName();
+            this.memberCount = gang.getMemberCount();
+            this.createdAt = gang.getCreatedAt();
+            this.ownerUUID = gang.getOwnerUUID();
+        }
+    }
+
+    private static class PendingPage {
+
+        private final Player player;
+        private final int page;
+
+        private PendingPage(Player player, int page) {
+            this.player = player;
+            this.page = page;
+        }
+    }
+
+    private static class RenderedList {
+
+        private final long generation;
+        private final String[] lines;
+
+        private RenderedList(long generation, String[] lines) {
+            this.generation = generation;
+            this.lines = lines;
+        }
+    }
+}
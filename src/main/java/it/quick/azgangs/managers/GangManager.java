@@ -1,47 +1,483 @@
 package it.quick.azgangs.managers;
 
 import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.database.WriteBehindQueue;
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.Timer;
 import it.quick.azgangs.models.Gang;
+import it.quick.azgangs.utils.MessagePlaceholder;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Le modifiche avvengono solo sul thread principale; le letture (placeholder, task asincroni)
+ * sono sicure da qualsiasi thread grazie alle mappe concorrenti e al set concorrente dei membri di Gang.
+ */
 public class GangManager {
 
+    private static final int MAX_RESYNC_ATTEMPTS = 5;
+
+    // Con la cache online create e rename si completano in un task successivo, escluso dai tempi.
+    private static final Timer CREATE = Metrics.timer("gang.create");
+    private static final Timer DISBAND = Metrics.timer("gang.disband");
+    private static final Timer RENAME = Metrics.timer("gang.rename");
+    private static final Timer LEAVE = Metrics.timer("gang.leave");
+    private static final Timer ADD_MEMBER = Metrics.timer("gang.addMember");
+    private static final Timer PLAYER_JOIN = Metrics.timer("gang.playerJoin");
+    private static final Timer PLAYER_QUIT = Metrics.timer("gang.playerQuit");
+    private static final Timer RESYNC = Metrics.timer("gang.resync");
+    private static final Timer EVICT_IDLE = Metrics.timer("gang.evictIdle");
+
     private final AZGangs plugin;
     private final Map<UUID, Gang> playerGangs;
     private final Map<String, Gang> gangsByName;
     private final Map<Integer, Gang> gangsById;
+    private final AtomicInteger nextGangId = new AtomicInteger(1);
+    private final OnlineMemberIndex onlineMembers = new OnlineMemberIndex();
+    private final Map<Integer, Map<UUID, Player>> onlinePlayersByGang = new ConcurrentHashMap<>();
+    private final GangRanking ranking = new GangRanking();
+    private final GangNameIndex nameIndex = new GangNameIndex();
+    private final AtomicLong generation = new AtomicLong();
+
+    // Solo in modalita' cache online: gang caricate al pre-login, gang senza membri online e gang sciolte nella sessione
+    private final boolean onlineOnly;
+    private final Map<UUID, Optional<Gang>> preloadedGangs = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> idleGangs = new HashMap<>();
+    private final Set<Integer> disbandedGangIds = ConcurrentHashMap.newKeySet();
 
     public GangManager(AZGangs plugin) {
         this.plugin = plugin;
-        this.playerGangs = new HashMap<>();
-        this.gangsByName = new HashMap<>();
-        this.gangsById = new HashMap<>();
+        this.playerGangs = new ConcurrentHashMap<>();
+        this.gangsByName = new ConcurrentHashMap<>();
+        this.gangsById = new ConcurrentHashMap<>();
+        this.onlineOnly = plugin.getConfigManager().isOnlineOnlyCache();
         loadGangs();
+
+        if (onlineOnly) {
+            Bukkit.getScheduler().runTaskTimer(plugin, this::evictIdleGangs, 400L, 400L);
+        }
     }
 
     private void loadGangs() {
+        long start = System.currentTimeMillis();
+        applyGangs(readGangs(onlinePlayerUUIDs()), start);
+    }
+
+    private List<UUID> onlinePlayerUUIDs() {
+        List<UUID> playerUUIDs = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            playerUUIDs.add(player.getUniqueId());
+        }
+        return playerUUIDs;
+    }
+
+    // Solo letture dallo storage: puo' girare fuori dal thread principale.
+    private LoadedGangs readGangs(List<UUID> onlinePlayers) {
+        if (!onlineOnly) {
+            return new LoadedGangs(plugin.getStorage().getAllGangs(), 0);
+        }
+
+        int highestId = plugin.getStorage().getHighestGangId();
+        List<Gang> gangs = new ArrayList<>();
+        Set<UUID> loadedMembers = new HashSet<>();
+        for (UUID playerUUID : onlinePlayers) {
+            if (!loadedMembers.contains(playerUUID)) {
+                Gang gang = plugin.getStorage().getGangByPlayerUUID(playerUUID);
+                if (gang != null) {
+                    gangs.add(gang);
+                    loadedMembers.addAll(gang.getMembers());
+                }
+            }
+        }
+        return new LoadedGangs(gangs, highestId);
+    }
+
+    private void applyGangs(LoadedGangs loaded, long start) {
         playerGangs.clear();
         gangsByName.clear();
         gangsById.clear();
+        onlineMembers.clear();
+        onlinePlayersByGang.clear();
+        ranking.clear();
+        nameIndex.clear();
+        idleGangs.clear();
 
-        List<Gang> gangs = plugin.getDatabaseManager().getAllGangs();
+        if (onlineOnly) {
+            nextGangId.set(Math.max(nextGangId.get(), loaded.highestId + 1));
 
-        for (Gang gang : gangs) {
-            gangsById.put(gang.getId(), gang);
-            gangsByName.put(gang.getName().toLowerCase(), gang);
+            for (Gang gang : loaded.gangs) {
+                cacheGang(gang);
+            }
 
-            for (UUID memberUUID : gang.getMembers()) {
-                playerGangs.put(memberUUID, gang);
+            plugin.getLogger().info("Loaded " + gangsById.size() + " gangs of online players in " +
+                    (System.currentTimeMillis() - start) + "ms (online-only cache).");
+            return;
+        }
+
+        int highestId = 0;
+        for (Gang gang : loaded.gangs) {
+            indexGang(gang);
+            highestId = Math.max(highestId, gang.getId());
+        }
+        nextGangId.set(Math.max(nextGangId.get(), highestId + 1));
+
+        plugin.getLogger().info("Loaded " + loaded.gangs.size() + " gangs with " + playerGangs.size() + " members in " +
+                (System.currentTimeMillis() - start) + "ms.");
+    }
+
+    /**
+     * Ricarica le gang dallo storage. Prima di leggere, fuori dal thread principale, vengono completate le scritture
+     * in coda; se nel frattempo la memoria cambia la lettura viene ripetuta, cosi' nessuna modifica recente va persa.
+     * La callback riceve false se lo storage non ha accettato le scritture in coda.
+     */
+    public void resyncGangs(Consumer<Boolean> callback) {
+        resync(callback, MAX_RESYNC_ATTEMPTS);
+    }
+
+    private void resync(Consumer<Boolean> callback, int attemptsLeft) {
+        long expectedGeneration = generation.get();
+        List<UUID> onlinePlayers = onlinePlayerUUIDs();
+        long start = System.currentTimeMillis();
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            WriteBehindQueue queue = writeQueue();
+            queue.flush();
+            boolean flushed = !queue.isRetrying();
+            LoadedGangs loaded = flushed ? readGangs(onlinePlayers) : null;
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (generation.get() != expectedGeneration) {
+                    if (attemptsLeft > 1) {
+                        resync(callback, attemptsLeft - 1);
+                    } else {
+                        callback.accept(false);
+                    }
+                    return;
+                }
+
+                if (!flushed) {
+                    callback.accept(false);
+                    return;
+                }
+
+                long applyStart = System.nanoTime();
+                try {
+                    applyGangs(loaded, start);
+                } finally {
+                    RESYNC.record(applyStart);
+                }
+                callback.accept(true);
+            });
+        });
+    }
+
+    // Chiamato dal thread del pre-login: la gang viene messa in cache solo al join, sul thread principale.
+    public void preloadPlayer(UUID playerUUID) {
+        if (onlineOnly) {
+            preloadedGangs.put(playerUUID, Optional.ofNullable(plugin.getStorage().getGangByPlayerUUID(playerUUID)));
+        }
+    }
+
+    public void playerJoined(Player player) {
+        long start = System.nanoTime();
+        try {
+            trackJoin(player);
+        } finally {
+            PLAYER_JOIN.record(start);
+        }
+    }
+
+    private void trackJoin(Player player) {
+        UUID playerUUID = player.getUniqueId();
+
+        if (onlineOnly && !playerGangs.containsKey(playerUUID)) {
+            Optional<Gang> preloaded = preloadedGangs.remove(playerUUID);
+
+            if (preloaded != null) {
+                preloaded.ifPresent(this::cacheGang);
+            } else {
+                loadPlayerGang(player);
+            }
+        }
+
+        Gang gang = getPlayerGang(playerUUID);
+        if (gang != null) {
+            trackOnline(player, gang);
+            idleGangs.remove(gang.getId());
+        }
+    }
+
+    public void playerQuit(Player player) {
+        long start = System.nanoTime();
+        try {
+            trackQuit(player);
+        } finally {
+            PLAYER_QUIT.record(start);
+        }
+    }
+
+    private void trackQuit(Player player) {
+        UUID playerUUID = player.getUniqueId();
+        Gang gang = getPlayerGang(playerUUID);
+
+        if (gang != null) {
+            untrackOnline(playerUUID, gang);
+            updateIdle(gang, playerUUID);
+        }
+
+        if (onlineOnly) {
+            preloadedGangs.remove(playerUUID);
+        }
+    }
+
+    private void loadPlayerGang(Player player) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            Gang gang = plugin.getStorage().getGangByPlayerUUID(player.getUniqueId());
+
+            if (gang != null) {
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (player.isOnline() && !playerGangs.containsKey(player.getUniqueId())) {
+                        cacheGang(gang);
+                    }
+                });
+            }
+        });
+    }
+
+    // La memoria resta la fonte autorevole: una gang gia' in cache o sciolta non viene sovrascritta dallo storage,
+    // e i membri che in memoria appartengono gia' a un'altra gang vengono ignorati.
+    private void cacheGang(Gang gang) {
+        if (gangsById.containsKey(gang.getId()) || disbandedGangIds.contains(gang.getId())) {
+            return;
+        }
+
+        for (UUID memberUUID : new ArrayList<>(gang.getMembers())) {
+            if (playerGangs.containsKey(memberUUID)) {
+                gang.removeMember(memberUUID);
+            }
+        }
+
+        indexGang(gang);
+        updateIdle(gang, null);
+    }
+
+    private void updateIdle(Gang gang, UUID leavingUUID) {
+        if (!onlineOnly) {
+            return;
+        }
+
+        for (UUID memberUUID : gang.getMembers()) {
+            if (!memberUUID.equals(leavingUUID) && Bukkit.getPlayer(memberUUID) != null) {
+                idleGangs.remove(gang.getId());
+                return;
+            }
+        }
+        idleGangs.putIfAbsent(gang.getId(), System.currentTimeMillis());
+    }
+
+    private void evictIdleGangs() {
+        long start = System.nanoTime();
+        try {
+            evictIdle();
+        } finally {
+            EVICT_IDLE.record(start);
+        }
+    }
+
+    private void evictIdle() {
+        preloadedGangs.keySet().removeIf(playerUUID -> Bukkit.getPlayer(playerUUID) == null);
+
+        // Una gang con scritture in attesa non va rimossa, altrimenti un nuovo caricamento leggerebbe dati vecchi.
+        if (idleGangs.isEmpty() || writeQueue().hasPendingWrites()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long grace = plugin.getConfigManager().getCacheEvictionGraceMillis();
+
+        Iterator<Map.Entry<Integer, Long>> iterator = idleGangs.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Long> entry = iterator.next();
+            if (now - entry.getValue() < grace) {
+                continue;
+            }
+
+            iterator.remove();
+            Gang gang = gangsById.get(entry.getKey());
+            if (gang != null) {
+                unindexGang(gang);
+            }
+        }
+    }
+
+    public void lookupGangByName(String name, Consumer<Gang> callback) {
+        Gang cached = getGangByName(name);
+        if (cached != null || !onlineOnly) {
+            callback.accept(cached);
+            return;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            Gang stored = plugin.getStorage().getGangByName(name);
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (stored != null) {
+                    cacheGang(stored);
+                }
+                callback.accept(getGangByName(name));
+            });
+        });
+    }
+
+    // Con la cache online i nomi delle gang non in memoria vanno verificati anche sullo storage.
+    private void whenNameAvailable(Player player, String name, Runnable action) {
+        if (!onlineOnly) {
+            action.run();
+            return;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            Gang stored = plugin.getStorage().getGangByName(name);
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (!player.isOnline()) {
+                    return;
+                }
+
+                if (stored != null && !disbandedGangIds.contains(stored.getId())) {
+                    Gang cached = gangsById.get(stored.getId());
+                    if (cached == null || cached.getName().equalsIgnoreCase(name)) {
+                        player.sendMessage(plugin.getConfigManager().getMessage("gang-name-taken"));
+                        return;
+                    }
+                }
+
+                action.run();
+            });
+        });
+    }
+
+    private WriteBehindQueue writeQueue() {
+        return plugin.getStorage().getWriteQueue();
+    }
+
+    private Consumer<Boolean> persistCallback(Gang gang) {
+        return success -> {
+            if (!success) {
+                plugin.getLogger().warning("Il database non e' allineato per la gang " + gang.getName() +
+                        ", usa /gang resync per ricaricare.");
             }
+        };
+    }
+
+    private void indexGang(Gang gang) {
+        gangsById.put(gang.getId(), gang);
+        gangsByName.put(gang.getName().toLowerCase(), gang);
+        nameIndex.add(gang.getName());
+
+        for (UUID memberUUID : gang.getMembers()) {
+            playerGangs.put(memberUUID, gang);
+            Player member = Bukkit.getPlayer(memberUUID);
+            if (member != null) {
+                trackOnline(member, gang);
+            }
+        }
+        if (!onlineOnly) {
+            ranking.add(gang);
+        }
+        generation.incrementAndGet();
+    }
+
+    private void unindexGang(Gang gang) {
+        gangsById.remove(gang.getId());
+        gangsByName.remove(gang.getName().toLowerCase());
+        nameIndex.remove(gang.getName());
+
+        for (UUID memberUUID : gang.getMembers()) {
+            playerGangs.remove(memberUUID, gang);
+            onlineMembers.remove(memberUUID);
+        }
+        onlinePlayersByGang.remove(gang.getId());
+        if (!onlineOnly) {
+            ranking.remove(gang);
+        }
+        generation.incrementAndGet();
+
+        if (plugin.getGangChatManager() != null) {
+            plugin.getGangChatManager().gangRemoved(gang.getId());
         }
+    }
+
+    private void indexMember(Gang gang, UUID playerUUID) {
+        gang.addMember(playerUUID);
+        playerGangs.put(playerUUID, gang);
+        Player player = Bukkit.getPlayer(playerUUID);
+        if (player != null) {
+            trackOnline(player, gang);
+        }
+        if (!onlineOnly) {
+            ranking.update(gang);
+        }
+        generation.incrementAndGet();
+    }
+
+    private void unindexMember(Gang gang, UUID playerUUID) {
+        gang.removeMember(playerUUID);
+        playerGangs.remove(playerUUID, gang);
+        untrackOnline(playerUUID, gang);
+        if (!onlineOnly) {
+            ranking.update(gang);
+        }
+        generation.incrementAndGet();
+    }
+
+    private void trackOnline(Player player, Gang gang) {
+        onlineMembers.put(player.getUniqueId(), gang.getId());
+        onlinePlayersByGang.computeIfAbsent(gang.getId(), id -> new ConcurrentHashMap<>())
+                .put(player.getUniqueId(), player);
+    }
 
-        plugin.getLogger().info("Loaded " + gangs.size() + " gangs with " + playerGangs.size() + " members.");
+    private void untrackOnline(UUID playerUUID, Gang gang) {
+        onlineMembers.remove(playerUUID);
+        onlinePlayersByGang.computeIfPresent(gang.getId(), (id, players) -> {
+            players.remove(playerUUID);
+            return players.isEmpty() ? null : players;
+        });
+    }
+
+    /**
+     * Membri online della gang; leggibile da qualsiasi thread, ad esempio dalla chat asincrona.
+     */
+    public Collection<Player> getOnlineMembers(int gangId) {
+        Map<UUID, Player> players = onlinePlayersByGang.get(gangId);
+        return players != null ? players.values() : Collections.emptyList();
     }
 
     public boolean createGang(Player player, String name) {
+        long start = System.nanoTime();
+        try {
+            if (!canCreateGang(player, name)) {
+                return false;
+            }
+
+            whenNameAvailable(player, name, () -> {
+                if (canCreateGang(player, name)) {
+                    insertGang(player, name);
+                }
+            });
+            return true;
+        } finally {
+            CREATE.record(start);
+        }
+    }
+
+    private boolean canCreateGang(Player player, String name) {
         UUID playerUUID = player.getUniqueId();
 
         if (isPlayerInGang(playerUUID)) {
@@ -57,28 +493,38 @@ public class GangManager {
         int minLength = plugin.getConfigManager().getMinNameLength();
         int maxLength = plugin.getConfigManager().getMaxNameLength();
 
-        if (name.length() < minLength || name.length() > maxLength || !name.matches("[a-zA-Z0-9]+")) {
-            player.sendMessage(plugin.getConfigManager().getMessage("gang-name-invalid")
-                    .replace("%min%", String.valueOf(minLength))
-                    .replace("%max%", String.valueOf(maxLength)));
+        if (name.length() < minLength || name.length() > maxLength || !plugin.getConfigManager().getNamePattern().matcher(name).matches()) {
+            player.sendMessage(plugin.getConfigManager().getMessage("gang-name-invalid",
+                    MessagePlaceholder.MIN, String.valueOf(minLength), MessagePlaceholder.MAX, String.valueOf(maxLength)));
             return false;
         }
 
-        boolean success = plugin.getDatabaseManager().createGang(name, playerUUID);
+        return true;
+    }
 
-        if (success) {
-            loadGangs();
+    private void insertGang(Player player, String name) {
+        UUID playerUUID = player.getUniqueId();
 
-            player.sendMessage(plugin.getConfigManager().getMessage("gang-created")
-                    .replace("%gangName%", name));
+        Gang gang = new Gang(nextGangId.getAndIncrement(), name, playerUUID);
+        gang.addMember(playerUUID);
+        indexGang(gang);
 
-            return true;
-        }
+        writeQueue().createGang(gang.getId(), name, playerUUID, gang.getCreatedAt(), persistCallback(gang));
+        writeQueue().addMember(gang.getId(), playerUUID, null);
 
-        return false;
+        player.sendMessage(plugin.getConfigManager().getMessage("gang-created", MessagePlaceholder.GANG_NAME, name));
     }
 
     public boolean disbandGang(Player player) {
+        long start = System.nanoTime();
+        try {
+            return disband(player);
+        } finally {
+            DISBAND.record(start);
+        }
+    }
+
+    private boolean disband(Player player) {
         UUID playerUUID = player.getUniqueId();
         Gang gang = getPlayerGang(playerUUID);
 
@@ -92,77 +538,106 @@ public class GangManager {
             return false;
         }
 
-        boolean success = plugin.getDatabaseManager().disbandGang(gang.getId());
-
-        if (success) {
-            for (UUID memberUUID : gang.getMembers()) {
-                Player member = Bukkit.getPlayer(memberUUID);
-                if (member != null && member.isOnline()) {
-                    member.sendMessage(plugin.getConfigManager().getMessage("gang-disbanded")
-                            .replace("%gangName%", gang.getName()));
-                }
+        for (UUID memberUUID : gang.getMembers()) {
+            Player member = Bukkit.getPlayer(memberUUID);
+            if (member != null && member.isOnline()) {
+                member.sendMessage(plugin.getConfigManager().getMessage("gang-disbanded",
+                        MessagePlaceholder.GANG_NAME, gang.getName()));
             }
+        }
 
-            loadGangs();
-
-            return true;
+        // Segnata come sciolta prima di toglierla dalla memoria, cosi' loadAllGangs() non la legge dallo storage.
+        if (onlineOnly) {
+            disbandedGangIds.add(gang.getId());
+            idleGangs.remove(gang.getId());
         }
+        unindexGang(gang);
+
+        writeQueue().disbandGang(gang.getId(), persistCallback(gang));
 
-        return false;
+        return true;
     }
 
     public boolean renameGang(Player player, String newName) {
+        long start = System.nanoTime();
+        try {
+            if (renamableGang(player, newName) == null) {
+                return false;
+            }
+
+            whenNameAvailable(player, newName, () -> {
+                Gang gang = renamableGang(player, newName);
+                if (gang != null) {
+                    applyRename(gang, newName);
+                }
+            });
+            return true;
+        } finally {
+            RENAME.record(start);
+        }
+    }
+
+    private Gang renamableGang(Player player, String newName) {
         UUID playerUUID = player.getUniqueId();
         Gang gang = getPlayerGang(playerUUID);
 
         if (gang == null) {
             player.sendMessage(plugin.getConfigManager().getMessage("not-in-gang"));
-            return false;
+            return null;
         }
 
         if (!gang.isOwner(playerUUID)) {
             player.sendMessage(plugin.getConfigManager().getMessage("not-gang-owner"));
-            return false;
+            return null;
         }
 
         if (getGangByName(newName) != null) {
             player.sendMessage(plugin.getConfigManager().getMessage("gang-name-taken"));
-            return false;
+            return null;
         }
 
         int minLength = plugin.getConfigManager().getMinNameLength();
         int maxLength = plugin.getConfigManager().getMaxNameLength();
 
-        if (newName.length() < minLength || newName.length() > maxLength || !newName.matches("[a-zA-Z0-9]+")) {
-            player.sendMessage(plugin.getConfigManager().getMessage("gang-name-invalid")
-                    .replace("%min%", String.valueOf(minLength))
-                    .replace("%max%", String.valueOf(maxLength)));
-            return false;
+        if (newName.length() < minLength || newName.length() > maxLength || !plugin.getConfigManager().getNamePattern().matcher(newName).matches()) {
+            player.sendMessage(plugin.getConfigManager().getMessage("gang-name-invalid",
+                    MessagePlaceholder.MIN, String.valueOf(minLength), MessagePlaceholder.MAX, String.valueOf(maxLength)));
+            return null;
         }
 
-        String oldName = gang.getName();
-        boolean success = plugin.getDatabaseManager().renameGang(gang.getId(), newName);
+        return gang;
+    }
 
-        if (success) {
-            for (UUID memberUUID : gang.getMembers()) {
-                Player member = Bukkit.getPlayer(memberUUID);
-                if (member != null && member.isOnline()) {
-                    member.sendMessage(plugin.getConfigManager().getMessage("gang-renamed")
-                            .replace("%newName%", newName));
-                }
+    private void applyRename(Gang gang, String newName) {
+        for (UUID memberUUID : gang.getMembers()) {
+            Player member = Bukkit.getPlayer(memberUUID);
+            if (member != null && member.isOnline()) {
+                member.sendMessage(plugin.getConfigManager().getMessage("gang-renamed",
+                        MessagePlaceholder.NEW_NAME, newName));
             }
-
-            gang.setName(newName);
-            gangsByName.remove(oldName.toLowerCase());
-            gangsByName.put(newName.toLowerCase(), gang);
-
-            return true;
         }
 
-        return false;
+        String oldName = gang.getName();
+        gangsByName.put(newName.toLowerCase(), gang);
+        gang.setName(newName);
+        gangsByName.remove(oldName.toLowerCase(), gang);
+        nameIndex.remove(oldName);
+        nameIndex.add(newName);
+        generation.incrementAndGet();
+
+        writeQueue().renameGang(gang.getId(), newName, persistCallback(gang));
     }
 
     public boolean leaveGang(Player player) {
+        long start = System.nanoTime();
+        try {
+            return leave(player);
+        } finally {
+            LEAVE.record(start);
+        }
+    }
+
+    private boolean leave(Player player) {
         UUID playerUUID = player.getUniqueId();
         Gang gang = getPlayerGang(playerUUID);
 
@@ -171,36 +646,40 @@ public class GangManager {
             return false;
         }
 
+        // disband() e non disbandGang(): il tempo resta nel solo gang.leave invece di essere contato due volte.
         if (gang.isOwner(playerUUID)) {
-            return disbandGang(player);
+            return disband(player);
         }
 
-        boolean success = plugin.getDatabaseManager().removeMember(playerUUID);
+        unindexMember(gang, playerUUID);
+        updateIdle(gang, null);
 
-        if (success) {
-            player.sendMessage(plugin.getConfigManager().getMessage("gang-left")
-                    .replace("%gangName%", gang.getName()));
+        writeQueue().removeMember(playerUUID, persistCallback(gang));
 
-            for (UUID memberUUID : gang.getMembers()) {
-                if (!memberUUID.equals(playerUUID)) {
-                    Player member = Bukkit.getPlayer(memberUUID);
-                    if (member != null && member.isOnline()) {
-                        member.sendMessage(plugin.getConfigManager().getMessageNoPrefix("player-left-gang")
-                                .replace("%playerName%", player.getName())
-                                .replace("%gangName%", gang.getName()));
-                    }
-                }
-            }
-
-            loadGangs();
+        player.sendMessage(plugin.getConfigManager().getMessage("gang-left",
+                MessagePlaceholder.GANG_NAME, gang.getName()));
 
-            return true;
+        for (UUID memberUUID : gang.getMembers()) {
+            Player member = Bukkit.getPlayer(memberUUID);
+            if (member != null && member.isOnline()) {
+                member.sendMessage(plugin.getConfigManager().getMessageNoPrefix("player-left-gang",
+                        MessagePlaceholder.PLAYER_NAME, player.getName(), MessagePlaceholder.GANG_NAME, gang.getName()));
+            }
         }
 
-        return false;
+        return true;
     }
 
     public boolean addMember(Gang gang, UUID playerUUID) {
+        long start = System.nanoTime();
+        try {
+            return indexNewMember(gang, playerUUID);
+        } finally {
+            ADD_MEMBER.record(start);
+        }
+    }
+
+    private boolean indexNewMember(Gang gang, UUID playerUUID) {
         int maxMembers = plugin.getConfigManager().getMaxMembersPerGang();
         if (gang.getMemberCount() >= maxMembers) {
             Player player = Bukkit.getPlayer(playerUUID);
@@ -216,35 +695,26 @@ public class GangManager {
                 return true;
             }
 
-            boolean removed = plugin.getDatabaseManager().removeMember(playerUUID);
-            if (!removed) {
-                plugin.getLogger().warning("Errore nella rimozione di " + playerUUID + " dalla gang " +
-                        currentGang.getId() + " prima di aggiungerlo ad una nuova gang");
-                return false;
-            }
+            unindexMember(currentGang, playerUUID);
+            updateIdle(currentGang, null);
         }
 
-        boolean success = plugin.getDatabaseManager().addMember(gang.getId(), playerUUID);
+        indexMember(gang, playerUUID);
 
-        if (success) {
-            gang.addMember(playerUUID);
-            playerGangs.put(playerUUID, gang);
+        writeQueue().addMember(gang.getId(), playerUUID, persistCallback(gang));
 
-            Player newMember = Bukkit.getPlayer(playerUUID);
-            if (newMember != null && newMember.isOnline()) {
-                for (UUID memberUUID : gang.getMembers()) {
-                    Player member = Bukkit.getPlayer(memberUUID);
-                    if (member != null && member.isOnline() && !memberUUID.equals(playerUUID)) {
-                        member.sendMessage(plugin.getConfigManager().getMessage("invite-accepted")
-                                .replace("%playerName%", newMember.getName()));
-                    }
+        Player newMember = Bukkit.getPlayer(playerUUID);
+        if (newMember != null && newMember.isOnline()) {
+            for (UUID memberUUID : gang.getMembers()) {
+                Player member = Bukkit.getPlayer(memberUUID);
+                if (member != null && member.isOnline() && !memberUUID.equals(playerUUID)) {
+                    member.sendMessage(plugin.getConfigManager().getMessage("invite-accepted",
+                            MessagePlaceholder.PLAYER_NAME, newMember.getName()));
                 }
             }
-
-            return true;
         }
 
-        return false;
+        return true;
     }
 
     public Gang getPlayerGang(UUID playerUUID) {
@@ -263,14 +733,62 @@ public class GangManager {
         return new ArrayList<>(gangsById.values());
     }
 
+    /**
+     * Tutte le gang, anche quelle fuori dalla cache online: in quel caso legge lo storage e va chiamato fuori dal
+     * thread principale. Le gang in memoria prevalgono sulla copia salvata, che puo' non avere le scritture in coda.
+     */
+    public List<Gang> loadAllGangs() {
+        if (!onlineOnly) {
+            return getAllGangs();
+        }
+
+        Map<Integer, Gang> gangs = new HashMap<>();
+        for (Gang gang : plugin.getStorage().getAllGangs()) {
+            if (!disbandedGangIds.contains(gang.getId())) {
+                gangs.put(gang.getId(), gang);
+            }
+        }
+        gangs.putAll(gangsById);
+        return new ArrayList<>(gangs.values());
+    }
+
+    // Cambia a ogni modifica di gang o membri: serve a invalidare le viste derivate, come /gang list.
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public List<String> searchGangNames(String prefix) {
+        return nameIndex.search(prefix, plugin.getConfigManager().getSearchResultLimit());
+    }
+
+    // Con la cache online la classifica resta vuota: coprirebbe solo le gang con membri online.
+    public GangRanking getRanking() {
+        return ranking;
+    }
+
     public boolean isPlayerInGang(UUID playerUUID) {
         return playerGangs.containsKey(playerUUID);
     }
 
+    public boolean areOnlinePlayersInSameGang(UUID player1UUID, UUID player2UUID) {
+        return onlineMembers.sameGang(player1UUID, player2UUID);
+    }
+
     public boolean arePlayersInSameGang(UUID player1UUID, UUID player2UUID) {
         Gang gang1 = getPlayerGang(player1UUID);
         Gang gang2 = getPlayerGang(player2UUID);
 
         return gang1 != null && gang2 != null && gang1.equals(gang2);
     }
-}
\ No newline at end of file
+
+    private static final class LoadedGangs {
+
+        private final List<Gang> gangs;
+        private final int highestId;
+
+        private LoadedGangs(List<Gang> gangs, int highestId) {
+            this.gangs = gangs;
+            this.highestId = highestId;
+        }
+    }
+}
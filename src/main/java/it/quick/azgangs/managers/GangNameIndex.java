@@ -0,0 +1,116 @@
+package it.quick.azgangs.managers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trie dei nomi delle gang, senza distinzione tra maiuscole e minuscole, per completamento e ricerca per prefisso.
+ * Una ricerca visita solo il prefisso e i nodi dei risultati restituiti, non tutte le gang.
+ */
+public class GangNameIndex {
+
+    private Node root = new Node();
+
+    public synchronized void add(String name) {
+        String key = name.toLowerCase();
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        node.name = name;
+    }
+
+    public synchronized void remove(String name) {
+        String key = name.toLowerCase();
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+        path[key.length()].name = null;
+
+        for (int i = key.length(); i > 0 && path[i].name == null && path[i].size == 0; i--) {
+            path[i - 1].removeChild(key.charAt(i - 1));
+        }
+    }
+
+    public synchronized void clear() {
+        root = new Node();
+    }
+
+    /**
+     * Nomi che iniziano con il prefisso, in ordine alfabetico, al massimo {@code limit}.
+     */
+    public synchronized List<String> search(String prefix, int limit) {
+        List<String> results = new ArrayList<>();
+        String key = prefix.toLowerCase();
+
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+
+        if (node != null) {
+            collect(node, results, limit);
+        }
+        return results;
+    }
+
+    private void collect(Node node, List<String> results, int limit) {
+        if (node.name != null) {
+            results.add(node.name);
+        }
+        for (int i = 0; i < node.size && results.size() < limit; i++) {
+            collect(node.children[i], results, limit);
+        }
+    }
+
+    private static class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int size;
+        private String name;
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            Node child = new Node();
+            keys[index] = key;
+            children[index] = child;
+            size++;
+            return child;
+        }
+
+        private void removeChild(char key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0) {
+                System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+                System.arraycopy(children, index + 1, children, index, size - index - 1);
+                children[--size] = null;
+            }
+        }
+    }
+}
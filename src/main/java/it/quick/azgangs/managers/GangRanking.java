@@ -0,0 +1,209 @@
+package it.quick.azgangs.managers;
+
+import it.quick.azgangs.models.Gang;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Classifica delle gang per numero di membri (a parita', id piu' basso prima), su un treap con
+ * dimensione dei sottoalberi: posizione e rango si ottengono in O(log n).
+ * Aggiornata dal thread principale, interrogabile da qualsiasi thread.
+ */
+public class GangRanking {
+
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private Node root;
+    // Cambia a ogni modifica della classifica: i valori derivati, come il rango in cache, vanno ricalcolati.
+    private volatile long version;
+
+    public synchronized void add(Gang gang) {
+        remove(gang);
+
+        Node node = new Node(gang);
+        nodes.put(gang.getId(), node);
+        root = insert(root, node);
+        version++;
+    }
+
+    public synchronized void remove(Gang gang) {
+        Node node = nodes.remove(gang.getId());
+        if (node != null) {
+            root = delete(root, node);
+            version++;
+        }
+    }
+
+    public synchronized void update(Gang gang) {
+        Node node = nodes.get(gang.getId());
+        if (node == null || node.memberCount != gang.getMemberCount()) {
+            add(gang);
+        }
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+        root = null;
+        version++;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Gang alla posizione indicata (1 = la piu' numerosa), o null se la classifica e' piu' corta.
+     */
+    public synchronized Gang getByRank(int rank) {
+        int index = rank - 1;
+        if (index < 0 || index >= size(root)) {
+            return null;
+        }
+
+        Node node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.gang;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Posizione della gang in classifica (1 = la piu' numerosa), o 0 se non e' indicizzata.
+     */
+    public synchronized int getRank(Gang gang) {
+        Node target = nodes.get(gang.getId());
+        if (target == null) {
+            return 0;
+        }
+
+        int rank = 1;
+        Node node = root;
+        while (node != null) {
+            int comparison = compare(target, node);
+            if (comparison < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left);
+                if (comparison == 0) {
+                    return rank;
+                }
+                rank++;
+                node = node.right;
+            }
+        }
+        return 0;
+    }
+
+    private Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+
+        if (compare(inserted, node) < 0) {
+            node.left = insert(node.left, inserted);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, inserted);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        return node.resize();
+    }
+
+    private Node delete(Node node, Node deleted) {
+        if (node == null) {
+            return null;
+        }
+
+        int comparison = compare(deleted, node);
+        if (comparison < 0) {
+            node.left = delete(node.left, deleted);
+        } else if (comparison > 0) {
+            node.right = delete(node.right, deleted);
+        } else {
+            return merge(node.left, node.right);
+        }
+        return node.resize();
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return left.resize();
+        }
+        right.left = merge(left, right.left);
+        return right.resize();
+    }
+
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        node.resize();
+        pivot.right = node;
+        return pivot.resize();
+    }
+
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        node.resize();
+        pivot.left = node;
+        return pivot.resize();
+    }
+
+    private static int compare(Node a, Node b) {
+        if (a.memberCount != b.memberCount) {
+            return Integer.compare(b.memberCount, a.memberCount);
+        }
+        return Integer.compare(a.gangId, b.gangId);
+    }
+
+    private static int size(Node node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static class Node {
+
+        private final Gang gang;
+        private final int gangId;
+        private final int memberCount;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(Gang gang) {
+            this.gang = gang;
+            this.gangId = gang.getId();
+            this.memberCount = gang.getMemberCount();
+        }
+
+        private Node resize() {
+            size = 1 + GangRanking.size(left) + GangRanking.size(right);
+            return this;
+        }
+    }
+}
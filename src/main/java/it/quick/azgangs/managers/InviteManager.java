@@ -2,25 +2,32 @@ package it.quick.azgangs.managers;
 
 import it.quick.azgangs.AZGangs;
 import it.quick.azgangs.models.Gang;
+import it.quick.azgangs.utils.MessagePlaceholder;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Inviti in sospeso. La durata e' uguale per tutti, quindi l'ordine di creazione e' anche l'ordine di scadenza:
+ * una coda FIFO basta a scadere gli inviti guardando solo la testa, senza scorrere tutti i player.
+ */
 public class InviteManager {
 
     private final AZGangs plugin;
-    private final Map<UUID, Map<Integer, Long>> invites;
-    private static final long INVITE_EXPIRATION_TIME = 60 * 1000;
+    private final Map<UUID, PlayerInvites> invites = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> pendingByGang = new ConcurrentHashMap<>();
+    private final Queue<Invite> expiryQueue = new ConcurrentLinkedQueue<>();
 
     public InviteManager(AZGangs plugin) {
         this.plugin = plugin;
-        this.invites = new ConcurrentHashMap<>();
 
-        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::cleanupExpiredInvites, 6000, 6000);
+        Bukkit.getScheduler().runTaskTimer(plugin, this::cleanupExpiredInvites, 20, 20);
     }
 
     public void sendInvite(Player sender, Player target) {
@@ -49,48 +56,59 @@ public class InviteManager {
             return;
         }
 
-        invites.computeIfAbsent(targetUUID, k -> new HashMap<>());
+        if (pendingByGang.getOrDefault(gang.getId(), 0) >= plugin.getConfigManager().getMaxPendingInvitesPerGang()) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("invite-limit-reached"));
+            return;
+        }
 
-        invites.get(targetUUID).put(gang.getId(), System.currentTimeMillis());
+        Invite invite = new Invite(targetUUID, gang.getId(), System.currentTimeMillis());
+        invites.compute(targetUUID, (uuid, playerInvites) -> {
+            if (playerInvites == null) {
+                playerInvites = new PlayerInvites();
+            }
+
+            // Un nuovo invito dalla stessa gang sostituisce il precedente e ne riparte la durata.
+            Invite previous = playerInvites.remove(gang.getId());
+            if (previous != null) {
+                decrementPending(previous.gangId);
+            }
+            playerInvites.add(invite);
+            pendingByGang.merge(gang.getId(), 1, Integer::sum);
+            return playerInvites;
+        });
+        expiryQueue.add(invite);
 
-        sender.sendMessage(plugin.getConfigManager().getMessage("invite-sent")
-                .replace("%playerName%", target.getName()));
+        sender.sendMessage(plugin.getConfigManager().getMessage("invite-sent",
+                MessagePlaceholder.PLAYER_NAME, target.getName()));
 
-        target.sendMessage(plugin.getConfigManager().getMessage("invite-received")
-                .replace("%gangName%", gang.getName()));
+        target.sendMessage(plugin.getConfigManager().getMessage("invite-received",
+                MessagePlaceholder.GANG_NAME, gang.getName()));
     }
 
     public boolean acceptInvite(Player player) {
         UUID playerUUID = player.getUniqueId();
+        long expiredBefore = System.currentTimeMillis() - plugin.getConfigManager().getInviteExpirationMillis();
 
-        if (!invites.containsKey(playerUUID) || invites.get(playerUUID).isEmpty()) {
-            player.sendMessage(plugin.getConfigManager().getMessage("no-pending-invites"));
-            return false;
-        }
-
-        Map<Integer, Long> playerInvites = invites.get(playerUUID);
-        Map.Entry<Integer, Long> mostRecentInvite = null;
-
-        for (Map.Entry<Integer, Long> entry : playerInvites.entrySet()) {
-            if (mostRecentInvite == null || entry.getValue() > mostRecentInvite.getValue()) {
-                mostRecentInvite = entry;
-            }
-        }
+        Invite[] newest = new Invite[1];
+        invites.computeIfPresent(playerUUID, (uuid, playerInvites) -> {
+            newest[0] = playerInvites.newest;
+            return playerInvites;
+        });
 
-        if (mostRecentInvite == null) {
+        if (newest[0] == null) {
             player.sendMessage(plugin.getConfigManager().getMessage("no-pending-invites"));
             return false;
         }
 
-        if (System.currentTimeMillis() - mostRecentInvite.getValue() > INVITE_EXPIRATION_TIME) {
-            playerInvites.remove(mostRecentInvite.getKey());
+        if (newest[0].createdAt <= expiredBefore) {
+            removeInvite(newest[0]);
             player.sendMessage(plugin.getConfigManager().getMessage("invite-expired"));
             return false;
         }
 
-        Gang gang = plugin.getGangManager().getGangById(mostRecentInvite.getKey());
+        Gang gang = plugin.getGangManager().getGangById(newest[0].gangId);
         if (gang == null) {
-            playerInvites.remove(mostRecentInvite.getKey());
+            removeInvite(newest[0]);
             player.sendMessage(plugin.getConfigManager().getMessage("gang-not-found"));
             return false;
         }
@@ -98,10 +116,10 @@ public class InviteManager {
         boolean success = plugin.getGangManager().addMember(gang, playerUUID);
 
         if (success) {
-            invites.remove(playerUUID);
+            removeInvites(playerUUID);
 
-            player.sendMessage(plugin.getConfigManager().getMessage("joined-gang")
-                    .replace("%gangName%", gang.getName()));
+            player.sendMessage(plugin.getConfigManager().getMessage("joined-gang",
+                    MessagePlaceholder.GANG_NAME, gang.getName()));
 
             return true;
         }
@@ -109,24 +127,101 @@ public class InviteManager {
         return false;
     }
 
+    /**
+     * Scade gli inviti in testa alla coda: ogni invito viene visitato una sola volta, quando raggiunge la testa.
+     * Le voci gia' accettate o sostituite vengono scartate senza altro lavoro.
+     */
     public void cleanupExpiredInvites() {
-        long currentTime = System.currentTimeMillis();
+        long expiredBefore = System.currentTimeMillis() - plugin.getConfigManager().getInviteExpirationMillis();
+
+        Invite head;
+        while ((head = expiryQueue.peek()) != null && head.createdAt <= expiredBefore) {
+            expiryQueue.poll();
 
-        invites.forEach((playerUUID, gangInvites) -> {
-            gangInvites.entrySet().removeIf(entry ->
-                    currentTime - entry.getValue() > INVITE_EXPIRATION_TIME);
+            removeInvite(head);
+        }
+    }
 
-            if (gangInvites.isEmpty()) {
-                invites.remove(playerUUID);
+    // Rimuove l'invito solo se e' ancora quello attivo per la sua gang, non uno che lo ha sostituito.
+    private void removeInvite(Invite invite) {
+        invites.computeIfPresent(invite.targetUUID, (uuid, playerInvites) -> {
+            if (playerInvites.byGang.get(invite.gangId) == invite) {
+                playerInvites.remove(invite.gangId);
+                decrementPending(invite.gangId);
             }
+            return playerInvites.isEmpty() ? null : playerInvites;
         });
     }
 
     public void removeInvites(UUID playerUUID) {
-        invites.remove(playerUUID);
+        invites.computeIfPresent(playerUUID, (uuid, playerInvites) -> {
+            for (Integer gangId : playerInvites.byGang.keySet()) {
+                decrementPending(gangId);
+            }
+            return null;
+        });
     }
 
     public boolean hasInvite(UUID playerUUID) {
-        return invites.containsKey(playerUUID) && !invites.get(playerUUID).isEmpty();
+        return invites.containsKey(playerUUID);
+    }
+
+    private void decrementPending(int gangId) {
+        pendingByGang.computeIfPresent(gangId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static class Invite {
+
+        private final UUID targetUUID;
+        private final int gangId;
+        private final long createdAt;
+        private Invite older;
+        private Invite newer;
+
+        private Invite(UUID targetUUID, int gangId, long createdAt) {
+            this.targetUUID = targetUUID;
+            this.gangId = gangId;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // Inviti di un player per gang, collegati dal piu' vecchio al piu' recente. Modificati solo dentro compute
+    // sulla mappa degli inviti, quindi un player alla volta.
+    private static class PlayerInvites {
+
+        private final Map<Integer, Invite> byGang = new HashMap<>(4);
+        private Invite newest;
+
+        private void add(Invite invite) {
+            byGang.put(invite.gangId, invite);
+            invite.older = newest;
+            if (newest != null) {
+                newest.newer = invite;
+            }
+            newest = invite;
+        }
+
+        private Invite remove(int gangId) {
+            Invite invite = byGang.remove(gangId);
+            if (invite == null) {
+                return null;
+            }
+
+            if (invite.newer != null) {
+                invite.newer.older = invite.older;
+            } else {
+                newest = invite.older;
+            }
+            if (invite.older != null) {
+                invite.older.newer = invite.newer;
+            }
+            invite.older = null;
+            invite.newer = null;
+            return invite;
+        }
+
+        private boolean isEmpty() {
+            return byGang.isEmpty();
+        }
     }
-}
\ No newline at end of file
+}
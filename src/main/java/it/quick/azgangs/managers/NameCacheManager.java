@@ -0,0 +1,141 @@
+package it.quick.azgangs.managers;
+
+import it.quick.azgangs.AZGangs;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nomi dei player serviti dalla memoria (LRU) e salvati nello storage del plugin.
+ * I nomi mancanti vengono caricati in asincrono: Bukkit.getOfflinePlayer non viene mai chiamato dal thread principale.
+ */
+public class NameCacheManager {
+
+    private final AZGangs plugin;
+    private final Map<UUID, String> names;
+    private final Set<UUID> loading = ConcurrentHashMap.newKeySet();
+
+    public NameCacheManager(AZGangs plugin) {
+        this.plugin = plugin;
+
+        int capacity = plugin.getConfigManager().getNameCacheSize();
+        this.names = Collections.synchronizedMap(new LinkedHashMap<UUID, String>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+                return size() > capacity;
+            }
+        });
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            names.put(player.getUniqueId(), player.getName());
+        }
+    }
+
+    /**
+     * Carica il nome salvato durante il pre-login, fuori dal thread principale: all'ingresso il nome viene
+     * riscritto nello storage solo se e' cambiato o non c'era.
+     */
+    public void preloadPlayer(UUID playerUUID) {
+        if (!names.containsKey(playerUUID)) {
+            names.putAll(plugin.getStorage().getPlayerNames(Collections.singleton(playerUUID)));
+        }
+    }
+
+    public void playerJoined(Player player) {
+        String previous = names.put(player.getUniqueId(), player.getName());
+
+        if (!player.getName().equals(previous)) {
+            plugin.getStorage().getWriteQueue().updatePlayerName(player.getUniqueId(), player.getName());
+        }
+    }
+
+    /**
+     * Restituisce il nome in cache, oppure null avviando il caricamento in background.
+     */
+    public String getName(UUID playerUUID) {
+        String name = names.get(playerUUID);
+        if (name == null) {
+            load(Collections.singleton(playerUUID), null);
+        }
+        return name;
+    }
+
+    public void whenLoaded(Collection<UUID> playerUUIDs, Runnable callback) {
+        load(playerUUIDs, callback);
+    }
+
+    private void load(Collection<UUID> playerUUIDs, Runnable callback) {
+        List<UUID> missing = new ArrayList<>();
+        for (UUID playerUUID : playerUUIDs) {
+            if (!names.containsKey(playerUUID) && (callback != null || loading.add(playerUUID))) {
+                missing.add(playerUUID);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            if (callback != null) {
+                callback.run();
+            }
+            return;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            fetch(missing);
+            loading.removeAll(missing);
+
+            if (callback != null) {
+                Bukkit.getScheduler().runTask(plugin, callback);
+            }
+        });
+    }
+
+    /**
+     * Restituisce i nomi richiesti caricando subito quelli mancanti; da usare solo fuori dal thread principale.
+     */
+    public Map<UUID, String> loadNow(Collection<UUID> playerUUIDs) {
+        Map<UUID, String> result = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+
+        for (UUID playerUUID : playerUUIDs) {
+            String name = names.get(playerUUID);
+            if (name != null) {
+                result.put(playerUUID, name);
+            } else {
+                missing.add(playerUUID);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            result.putAll(fetch(missing));
+        }
+        return result;
+    }
+
+    private Map<UUID, String> fetch(List<UUID> missing) {
+        Map<UUID, String> loaded = plugin.getStorage().getPlayerNames(missing);
+
+        for (UUID playerUUID : missing) {
+            if (!loaded.containsKey(playerUUID)) {
+                OfflinePlayer player = Bukkit.getOfflinePlayer(playerUUID);
+                if (player.getName() != null) {
+                    loaded.put(playerUUID, player.getName());
+                    plugin.getStorage().getWriteQueue().updatePlayerName(playerUUID, player.getName());
+                }
+            }
+        }
+
+        names.putAll(loaded);
+        return loaded;
+    }
+}
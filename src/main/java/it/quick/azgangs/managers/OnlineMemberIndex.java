@@ -0,0 +1,146 @@
+package it.quick.azgangs.managers;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Indice dei player online verso l'id della loro gang, con chiavi sui due long dell'UUID e nessun boxing.
+ * Tabella a indirizzamento aperto con probing lineare; va usato solo dal thread principale.
+ */
+public class OnlineMemberIndex {
+
+    public static final int NO_GANG = 0;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] mostBits;
+    private long[] leastBits;
+    private int[] gangIds;
+    private int mask;
+    private int size;
+
+    public OnlineMemberIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public int get(UUID playerUUID) {
+        long most = playerUUID.getMostSignificantBits();
+        long least = playerUUID.getLeastSignificantBits();
+
+        int slot = hash(most, least) & mask;
+        while (gangIds[slot] != NO_GANG) {
+            if (mostBits[slot] == most && leastBits[slot] == least) {
+                return gangIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_GANG;
+    }
+
+    public boolean sameGang(UUID player1UUID, UUID player2UUID) {
+        int gangId = get(player1UUID);
+        return gangId != NO_GANG && gangId == get(player2UUID);
+    }
+
+    public void put(UUID playerUUID, int gangId) {
+        if (gangId == NO_GANG) {
+            remove(playerUUID);
+            return;
+        }
+
+        long most = playerUUID.getMostSignificantBits();
+        long least = playerUUID.getLeastSignificantBits();
+
+        int slot = hash(most, least) & mask;
+        while (gangIds[slot] != NO_GANG) {
+            if (mostBits[slot] == most && leastBits[slot] == least) {
+                gangIds[slot] = gangId;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        mostBits[slot] = most;
+        leastBits[slot] = least;
+        gangIds[slot] = gangId;
+
+        if (++size * 2 > gangIds.length) {
+            rehash(gangIds.length * 2);
+        }
+    }
+
+    public void remove(UUID playerUUID) {
+        long most = playerUUID.getMostSignificantBits();
+        long least = playerUUID.getLeastSignificantBits();
+
+        int slot = hash(most, least) & mask;
+        while (gangIds[slot] != NO_GANG) {
+            if (mostBits[slot] == most && leastBits[slot] == least) {
+                size--;
+                shiftBack(slot);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(gangIds, NO_GANG);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Cancellazione senza tombstone: riporta indietro gli elementi successivi della stessa sequenza di probing.
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (gangIds[slot] == NO_GANG) {
+                break;
+            }
+
+            int home = hash(mostBits[slot], leastBits[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                mostBits[hole] = mostBits[slot];
+                leastBits[hole] = leastBits[slot];
+                gangIds[hole] = gangIds[slot];
+                hole = slot;
+            }
+        }
+        gangIds[hole] = NO_GANG;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMost = mostBits;
+        long[] oldLeast = leastBits;
+        int[] oldGangIds = gangIds;
+
+        allocate(capacity);
+        for (int i = 0; i < oldGangIds.length; i++) {
+            if (oldGangIds[i] != NO_GANG) {
+                int slot = hash(oldMost[i], oldLeast[i]) & mask;
+                while (gangIds[slot] != NO_GANG) {
+                    slot = (slot + 1) & mask;
+                }
+                mostBits[slot] = oldMost[i];
+                leastBits[slot] = oldLeast[i];
+                gangIds[slot] = oldGangIds[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostBits = new long[capacity];
+        leastBits = new long[capacity];
+        gangIds = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(long most, long least) {
+        long h = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,81 @@
+package it.quick.azgangs.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro dei timer del plugin. E' statico perche' i timer stanno in campi statici delle classi misurate;
+ * il thread principale viene fissato all'avvio per separare il tempo che pesa sul tick da quello asincrono.
+ * I tempi sono inclusivi e solo jdbc.statement si annida in altri timer: e' gia' compreso in storage.*,
+ * quindi le righe non vanno sommate tra loro.
+ */
+public final class Metrics {
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = true;
+    private static volatile Thread primaryThread;
+    private static volatile long sinceMillis = System.currentTimeMillis();
+    private static volatile long sinceNanos = System.nanoTime();
+
+    private Metrics() {
+    }
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    public static void setPrimaryThread(Thread thread) {
+        primaryThread = thread;
+    }
+
+    public static boolean isPrimaryThread() {
+        return Thread.currentThread() == primaryThread;
+    }
+
+    public static void reset() {
+        for (Timer timer : TIMERS.values()) {
+            timer.reset();
+        }
+        sinceMillis = System.currentTimeMillis();
+        sinceNanos = System.nanoTime();
+    }
+
+    // Inizio della finestra di misura: l'avvio del plugin o l'ultimo reset.
+    public static long getSinceMillis() {
+        return sinceMillis;
+    }
+
+    public static long getElapsedNanos() {
+        return System.nanoTime() - sinceNanos;
+    }
+
+    /**
+     * Timer con almeno una chiamata, ordinati per tempo sul thread principale e poi per tempo totale.
+     */
+    public static List<TimerSnapshot> snapshot() {
+        List<TimerSnapshot> snapshots = new ArrayList<>();
+        for (Timer timer : TIMERS.values()) {
+            TimerSnapshot snapshot = timer.snapshot();
+            if (snapshot.getCalls() > 0) {
+                snapshots.add(snapshot);
+            }
+        }
+
+        snapshots.sort(Comparator.comparingLong(TimerSnapshot::getPrimaryThreadNanos)
+                .thenComparingLong(TimerSnapshot::getTotalNanos)
+                .reversed());
+        return snapshots;
+    }
+}
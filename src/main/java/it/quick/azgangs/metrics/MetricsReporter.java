@@ -0,0 +1,120 @@
+package it.quick.azgangs.metrics;
+
+import it.quick.azgangs.AZGangs;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Scrive periodicamente le metriche nella cartella del plugin, fuori dal thread principale.
+ * In JSON il file contiene solo l'ultima istantanea; in CSV ogni scrittura aggiunge una riga per operazione,
+ * cosi' il file diventa una serie storica.
+ */
+public class MetricsReporter {
+
+    private static final String CSV_HEADER =
+            "timestamp,operation,calls,p50_us,p99_us,max_us,total_ms,main_thread_ms,main_thread_percent";
+
+    private final AZGangs plugin;
+    private final boolean csv;
+
+    public MetricsReporter(AZGangs plugin) {
+        this.plugin = plugin;
+        this.csv = plugin.getConfigManager().getMetricsDumpFormat().equalsIgnoreCase("csv");
+
+        long intervalTicks = plugin.getConfigManager().getMetricsDumpIntervalMinutes() * 60L * 20L;
+        if (intervalTicks > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::write, intervalTicks, intervalTicks);
+        }
+    }
+
+    public synchronized void write() {
+        if (!Metrics.isEnabled()) {
+            return;
+        }
+
+        List<TimerSnapshot> snapshots = Metrics.snapshot();
+        long elapsedNanos = Metrics.getElapsedNanos();
+        long now = System.currentTimeMillis();
+
+        try {
+            if (csv) {
+                appendCsv(snapshots, elapsedNanos, now);
+            } else {
+                writeJson(snapshots, elapsedNanos, now);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Impossibile scrivere le metriche: " + e.getMessage());
+        }
+    }
+
+    private void appendCsv(List<TimerSnapshot> snapshots, long elapsedNanos, long now) throws IOException {
+        File file = new File(plugin.getDataFolder(), "metrics.csv");
+        StringBuilder builder = new StringBuilder();
+        if (!file.exists()) {
+            builder.append(CSV_HEADER).append('\n');
+        }
+
+        for (TimerSnapshot snapshot : snapshots) {
+            builder.append(String.format(Locale.ROOT, "%d,%s,%d,%.1f,%.1f,%.1f,%.3f,%.3f,%.4f%n", now,
+                    snapshot.getName(), snapshot.getCalls(), micros(snapshot.getP50Nanos()),
+                    micros(snapshot.getP99Nanos()), micros(snapshot.getMaxNanos()),
+                    millis(snapshot.getTotalNanos()), millis(snapshot.getPrimaryThreadNanos()),
+                    percentOf(snapshot.getPrimaryThreadNanos(), elapsedNanos)));
+        }
+
+        Files.write(file.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void writeJson(List<TimerSnapshot> snapshots, long elapsedNanos, long now) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n");
+        builder.append("  \"timestamp\": ").append(now).append(",\n");
+        builder.append("  \"since\": ").append(Metrics.getSinceMillis()).append(",\n");
+        builder.append("  \"elapsedMillis\": ").append(elapsedNanos / 1_000_000L).append(",\n");
+        builder.append("  \"operations\": [");
+
+        for (int i = 0; i < snapshots.size(); i++) {
+            TimerSnapshot snapshot = snapshots.get(i);
+            builder.append(i == 0 ? "\n" : ",\n");
+            builder.append(String.format(Locale.ROOT, "    {\"name\": \"%s\", \"calls\": %d, \"p50Micros\": %.1f, " +
+                            "\"p99Micros\": %.1f, \"maxMicros\": %.1f, \"totalMillis\": %.3f, " +
+                            "\"mainThreadMillis\": %.3f, \"mainThreadPercent\": %.4f}",
+                    snapshot.getName(), snapshot.getCalls(), micros(snapshot.getP50Nanos()),
+                    micros(snapshot.getP99Nanos()), micros(snapshot.getMaxNanos()),
+                    millis(snapshot.getTotalNanos()), millis(snapshot.getPrimaryThreadNanos()),
+                    percentOf(snapshot.getPrimaryThreadNanos(), elapsedNanos)));
+        }
+        builder.append(snapshots.isEmpty() ? "]\n" : "\n  ]\n");
+        builder.append("}\n");
+
+        // Scrittura su file temporaneo e rinomina: chi legge il file non vede mai un JSON a meta'.
+        File file = new File(plugin.getDataFolder(), "metrics.json");
+        File temp = new File(plugin.getDataFolder(), "metrics.json.tmp");
+        Files.write(temp.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1_000.0;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Quota del tempo reale trascorso occupata sul thread principale: a 20 TPS e' la frazione del budget di tick.
+     */
+    public static double percentOf(long nanos, long elapsedNanos) {
+        return elapsedNanos > 0 ? nanos * 100.0 / elapsedNanos : 0;
+    }
+}
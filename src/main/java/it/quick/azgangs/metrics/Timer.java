@@ -0,0 +1,52 @@
+package it.quick.azgangs.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tempi di una singola operazione. Si ottiene una volta da {@link Metrics#timer(String)} e si tiene in un campo
+ * statico, cosi' il percorso caldo non cerca nulla nel registro:
+ *
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     ...
+ * } finally {
+ *     TIMER.record(start);
+ * }
+ * </pre>
+ */
+public final class Timer {
+
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder primaryThreadNanos = new LongAdder();
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long startNanos) {
+        if (!Metrics.isEnabled()) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - startNanos;
+        histogram.record(elapsed);
+        if (Metrics.isPrimaryThread()) {
+            primaryThreadNanos.add(elapsed);
+        }
+    }
+
+    void reset() {
+        histogram.reset();
+        primaryThreadNanos.reset();
+    }
+
+    TimerSnapshot snapshot() {
+        return new TimerSnapshot(name, histogram.snapshot(), primaryThreadNanos.sum());
+    }
+}
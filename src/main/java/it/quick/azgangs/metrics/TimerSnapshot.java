@@ -0,0 +1,53 @@
+package it.quick.azgangs.metrics;
+
+/**
+ * Valori di un {@link Timer} in un istante; i percentili sono gia' calcolati.
+ */
+public final class TimerSnapshot {
+
+    private final String name;
+    private final long calls;
+    private final long totalNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+    private final long primaryThreadNanos;
+
+    TimerSnapshot(String name, LatencyHistogram.Snapshot histogram, long primaryThreadNanos) {
+        this.name = name;
+        this.calls = histogram.count();
+        this.totalNanos = histogram.totalNanos();
+        this.p50Nanos = histogram.percentile(50);
+        this.p99Nanos = histogram.percentile(99);
+        this.maxNanos = histogram.maxNanos();
+        this.primaryThreadNanos = primaryThreadNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getPrimaryThreadNanos() {
+        return primaryThreadNanos;
+    }
+}
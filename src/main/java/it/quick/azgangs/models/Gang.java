@@ -1,24 +1,39 @@
 package it.quick.azgangs.models;
 
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
+import it.quick.azgangs.AZGangs;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Gang {
 
     private final int id;
-    private String name;
+    private volatile String name;
     private final UUID ownerUUID;
-    private List<UUID> members;
+    private final long createdAt;
+    // Membro -> ordine di ingresso: l'insieme resta leggibile da qualsiasi thread e /gang info li elenca in ordine.
+    private final Map<UUID, Long> members;
+    private final Set<UUID> membersView;
+    private long nextJoinOrder;
+    private volatile int revision;
 
     public Gang(int id, String name, UUID ownerUUID) {
+        this(id, name, ownerUUID, System.currentTimeMillis());
+    }
+
+    public Gang(int id, String name, UUID ownerUUID, long createdAt) {
         this.id = id;
         this.name = name;
         this.ownerUUID = ownerUUID;
-        this.members = new ArrayList<>();
+        this.createdAt = createdAt;
+        this.members = new ConcurrentHashMap<>();
+        this.membersView = Collections.unmodifiableSet(members.keySet());
     }
 
     public int getId() {
@@ -31,23 +46,32 @@ public class Gang {
 
     public void setName(String name) {
         this.name = name;
+        revision++;
     }
 
     public UUID getOwnerUUID() {
         return ownerUUID;
     }
 
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
     public String getOwnerName() {
-        OfflinePlayer player = Bukkit.getOfflinePlayer(ownerUUID);
-        return player.getName() != null ? player.getName() : "Unknown";
+        String name = AZGangs.getInstance().getNameCacheManager().getName(ownerUUID);
+        return name != null ? name : "Unknown";
     }
 
-    public List<UUID> getMembers() {
-        return members;
+    public Set<UUID> getMembers() {
+        return membersView;
     }
 
-    public void setMembers(List<UUID> members) {
-        this.members = members;
+    public void setMembers(Collection<UUID> members) {
+        this.members.keySet().retainAll(members);
+        for (UUID playerUUID : members) {
+            this.members.putIfAbsent(playerUUID, nextJoinOrder++);
+        }
+        revision++;
     }
 
     public int getMemberCount() {
@@ -55,7 +79,7 @@ public class Gang {
     }
 
     public boolean isMember(UUID playerUUID) {
-        return members.contains(playerUUID);
+        return members.containsKey(playerUUID);
     }
 
     public boolean isOwner(UUID playerUUID) {
@@ -63,16 +87,33 @@ public class Gang {
     }
 
     public void addMember(UUID playerUUID) {
-        if (!members.contains(playerUUID)) {
-            members.add(playerUUID);
+        if (members.putIfAbsent(playerUUID, nextJoinOrder++) == null) {
+            revision++;
         }
     }
 
+    public boolean removeMember(UUID playerUUID) {
+        if (members.remove(playerUUID) != null) {
+            revision++;
+            return true;
+        }
+        return false;
+    }
+
+    // Incrementata a ogni modifica di nome o membri, per invalidare i valori derivati dalla gang.
+    public int getRevision() {
+        return revision;
+    }
+
     public List<String> getMemberNames() {
-        List<String> names = new ArrayList<>();
-        for (UUID uuid : members) {
-            OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
-            names.add(player.getName() != null ? player.getName() : uuid.toString().substring(0, 8));
+        List<Map.Entry<UUID, Long>> ordered = new ArrayList<>(members.entrySet());
+        ordered.sort(Map.Entry.comparingByValue());
+
+        List<String> names = new ArrayList<>(ordered.size());
+        for (Map.Entry<UUID, Long> member : ordered) {
+            UUID uuid = member.getKey();
+            String name = AZGangs.getInstance().getNameCacheManager().getName(uuid);
+            names.add(name != null ? name : uuid.toString().substring(0, 8));
         }
         return names;
     }
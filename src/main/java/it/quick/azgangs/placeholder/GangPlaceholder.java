@@ -2,12 +2,29 @@ package it.quick.azgangs.placeholder;
 
 import it.quick.azgangs.AZGangs;
 import it.quick.azgangs.models.Gang;
+import it.quick.azgangs.managers.GangRanking;
+import it.quick.azgangs.metrics.Metrics;
+import it.quick.azgangs.metrics.Timer;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
+import me.clip.placeholderapi.expansion.Relational;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 
-public class GangPlaceholder extends PlaceholderExpansion {
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class GangPlaceholder extends PlaceholderExpansion implements Relational, Listener {
+
+    private static final Timer REQUEST = Metrics.timer("placeholder.request");
+    private static final Timer RELATIONAL_REQUEST = Metrics.timer("placeholder.relational");
 
     private final AZGangs plugin;
+    private final Map<UUID, PlaceholderSnapshot> snapshots = new ConcurrentHashMap<>();
+    // Numero di membri gia' formattato per posizione, valido finche' in quella posizione resta la stessa gang.
+    private final Map<Integer, TopEntry> topEntries = new ConcurrentHashMap<>();
 
     public GangPlaceholder(AZGangs plugin) {
         this.plugin = plugin;
@@ -35,34 +52,140 @@ public class GangPlaceholder extends PlaceholderExpansion {
 
     @Override
     public String onPlaceholderRequest(Player player, String identifier) {
+        long start = System.nanoTime();
+        try {
+            return resolve(player, identifier);
+        } finally {
+            REQUEST.record(start);
+        }
+    }
+
+    @Override
+    public String onPlaceholderRequest(Player viewer, Player target, String identifier) {
+        long start = System.nanoTime();
+        try {
+            return resolveRelational(viewer, target, identifier);
+        } finally {
+            RELATIONAL_REQUEST.record(start);
+        }
+    }
+
+    private String resolve(Player player, String identifier) {
         if (player == null) {
             return "";
         }
 
-        if (identifier.equals("gangname")) {
-            Gang gang = plugin.getGangManager().getPlayerGang(player.getUniqueId());
-            return gang != null ? gang.getName() : "";
+        PlaceholderSnapshot snapshot = getSnapshot(player);
+
+        switch (identifier) {
+            case "gangname":
+                return snapshot.gangName;
+            case "owner":
+                return snapshot.owner;
+            case "membercount":
+                return snapshot.memberCount;
+            case "isingang":
+                return snapshot.inGang;
+            case "isowner":
+                return snapshot.owned;
+            case "rank":
+                if (snapshot.gang == null) {
+                    return "";
+                }
+                return snapshot.rank(plugin.getGangManager().getRanking());
+            default:
+                return identifier.startsWith("top_") ? getTopPlaceholder(identifier) : null;
         }
+    }
 
-        if (identifier.equals("owner")) {
-            Gang gang = plugin.getGangManager().getPlayerGang(player.getUniqueId());
-            return gang != null ? gang.getOwnerName() : "";
+    private String resolveRelational(Player viewer, Player target, String identifier) {
+        if (viewer == null || target == null) {
+            return "";
         }
 
-        if (identifier.equals("membercount")) {
-            Gang gang = plugin.getGangManager().getPlayerGang(player.getUniqueId());
-            return gang != null ? String.valueOf(gang.getMemberCount()) : "0";
+        if (identifier.equals("samegang")) {
+            return String.valueOf(plugin.getGangManager()
+                    .arePlayersInSameGang(viewer.getUniqueId(), target.getUniqueId()));
         }
 
-        if (identifier.equals("isingang")) {
-            return String.valueOf(plugin.getGangManager().isPlayerInGang(player.getUniqueId()));
+        return null;
+    }
+
+    // top_<n>_name e top_<n>_members, letti senza creare sottostringhe
+    private String getTopPlaceholder(String identifier) {
+        int rank = 0;
+        int index = 4;
+        while (index < identifier.length() && Character.isDigit(identifier.charAt(index))) {
+            rank = rank * 10 + (identifier.charAt(index) - '0');
+            index++;
         }
 
-        if (identifier.equals("isowner")) {
-            Gang gang = plugin.getGangManager().getPlayerGang(player.getUniqueId());
-            return gang != null && gang.isOwner(player.getUniqueId()) ? "true" : "false";
+        if (index == 4 || index >= identifier.length() || identifier.charAt(index) != '_') {
+            return null;
         }
 
-        return null;
+        boolean name = identifier.regionMatches(index + 1, "name", 0, 4) && identifier.length() == index + 5;
+        boolean members = identifier.regionMatches(index + 1, "members", 0, 7) && identifier.length() == index + 8;
+        if (!name && !members) {
+            return null;
+        }
+
+        GangRanking ranking = plugin.getGangManager().getRanking();
+        Gang gang = ranking.getByRank(rank);
+        if (gang == null) {
+            return name ? "" : "0";
+        }
+        if (name) {
+            return gang.getName();
+        }
+
+        TopEntry entry = topEntries.get(rank);
+        if (entry == null || entry.gang != gang || entry.revision != gang.getRevision()) {
+            entry = new TopEntry(gang);
+            topEntries.put(rank, entry);
+        }
+        return entry.memberCount;
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        snapshots.remove(event.getPlayer().getUniqueId());
+    }
+
+    private PlaceholderSnapshot getSnapshot(Player player) {
+        UUID playerUUID = player.getUniqueId();
+        Gang gang = plugin.getGangManager().getPlayerGang(playerUUID);
+
+        PlaceholderSnapshot snapshot = snapshots.get(playerUUID);
+        if (snapshot != null && snapshot.isValidFor(gang)) {
+            return snapshot;
+        }
+
+        if (gang == null) {
+            snapshot = PlaceholderSnapshot.NO_GANG;
+        } else {
+            int revision = gang.getRevision();
+            String owner = plugin.getNameCacheManager().getName(gang.getOwnerUUID());
+
+            snapshot = new PlaceholderSnapshot(gang, revision, gang.getName(), owner != null ? owner : "Unknown",
+                    String.valueOf(gang.getMemberCount()), "true", String.valueOf(gang.isOwner(playerUUID)),
+                    owner != null);
+        }
+
+        snapshots.put(playerUUID, snapshot);
+        return snapshot;
+    }
+
+    private static final class TopEntry {
+
+        private final Gang gang;
+        private final int revision;
+        private final String memberCount;
+
+        private TopEntry(Gang gang) {
+            this.gang = gang;
+            this.revision = gang.getRevision();
+            this.memberCount = String.valueOf(gang.getMemberCount());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package it.quick.azgangs.placeholder;
+
+import it.quick.azgangs.managers.GangRanking;
+import it.quick.azgangs.models.Gang;
+
+/**
+ * Valori dei placeholder di un player, calcolati una volta e validi finche' la sua gang non cambia.
+ */
+final class PlaceholderSnapshot {
+
+    static final PlaceholderSnapshot NO_GANG = new PlaceholderSnapshot(null, 0, "", "", "0", "false", "false", true);
+
+    final Gang gang;
+    final int revision;
+    final String gangName;
+    final String owner;
+    final String memberCount;
+    final String inGang;
+    final String owned;
+    // false finche' il nome dell'owner non e' ancora nella cache dei nomi
+    final boolean complete;
+    // Il rango cambia anche quando cambiano le altre gang: resta valido finche' non cambia la classifica.
+    private volatile CachedRank rank;
+
+    PlaceholderSnapshot(Gang gang, int revision, String gangName, String owner, String memberCount,
+                        String inGang, String owned, boolean complete) {
+        this.gang = gang;
+        this.revision = revision;
+        this.gangName = gangName;
+        this.owner = owner;
+        this.memberCount = memberCount;
+        this.inGang = inGang;
+        this.owned = owned;
+        this.complete = complete;
+    }
+
+    boolean isValidFor(Gang current) {
+        return gang == current && complete && (current == null || revision == current.getRevision());
+    }
+
+    String rank(GangRanking ranking) {
+        long version = ranking.getVersion();
+        CachedRank cached = rank;
+        if (cached == null || cached.version != version) {
+            int position = ranking.getRank(gang);
+            cached = new CachedRank(version, position > 0 ? String.valueOf(position) : "");
+            rank = cached;
+        }
+        return cached.value;
+    }
+
+    private static final class CachedRank {
+
+        private final long version;
+        private final String value;
+
+        private CachedRank(long version, String value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -1,82 +1,245 @@
 package it.quick.azgangs.utils;
 
 import it.quick.azgangs.AZGangs;
-import org.bukkit.ChatColor;
-import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.logging.Level;
+import java.util.regex.Pattern;
 
 public class ConfigManager {
 
     private final AZGangs plugin;
-    private final FileConfiguration config;
+    private volatile Settings settings;
 
     public ConfigManager(AZGangs plugin) {
         this.plugin = plugin;
-        this.config = plugin.getConfig();
+        this.settings = new Settings(plugin.getConfig());
+    }
+
+    /**
+     * Rilegge config.yml e sostituisce le impostazioni in un colpo solo; se la config non e' valida restano le precedenti.
+     */
+    public boolean reload() {
+        try {
+            plugin.reloadConfig();
+            settings = new Settings(plugin.getConfig());
+            return true;
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Impossibile ricaricare config.yml, restano le impostazioni precedenti", e);
+            return false;
+        }
     }
 
     public String getDatabaseType() {
-        return config.getString("database.type", "mysql");
+        return settings.databaseType;
     }
 
     public String getDatabaseHost() {
-        return config.getString("database.host", "localhost");
+        return settings.databaseHost;
     }
 
     public int getDatabasePort() {
-        return config.getInt("database.port", 3306);
+        return settings.databasePort;
     }
 
     public String getDatabaseName() {
-        return config.getString("database.database", "azgangs");
+        return settings.databaseName;
     }
 
     public String getDatabaseUsername() {
-        return config.getString("database.username", "root");
+        return settings.databaseUsername;
     }
 
     public String getDatabasePassword() {
-        return config.getString("database.password", "password");
+        return settings.databasePassword;
     }
 
     public String getDatabasePrefix() {
-        return config.getString("database.table-prefix", "azgangs_");
+        return settings.databasePrefix;
+    }
+
+    public String getDatabaseJdbcUrl() {
+        return settings.databaseJdbcUrl;
+    }
+
+    public boolean isQueryMonitoringEnabled() {
+        return settings.queryMonitoringEnabled;
+    }
+
+    public long getSlowQueryMillis() {
+        return settings.slowQueryMillis;
+    }
+
+    public boolean isPrimaryThreadQueryWarningEnabled() {
+        return settings.primaryThreadQueryWarningEnabled;
+    }
+
+    public long getDatabaseConnectionTimeoutMillis() {
+        return settings.databaseConnectionTimeoutMillis;
+    }
+
+    public int getMysqlPoolSize() {
+        return settings.mysqlPoolSize;
+    }
+
+    public int getMysqlMinimumIdle() {
+        return settings.mysqlMinimumIdle;
+    }
+
+    public long getMysqlIdleTimeoutMillis() {
+        return settings.mysqlIdleTimeoutMillis;
+    }
+
+    public long getMysqlMaxLifetimeMillis() {
+        return settings.mysqlMaxLifetimeMillis;
+    }
+
+    public long getMysqlKeepaliveTimeMillis() {
+        return settings.mysqlKeepaliveTimeMillis;
+    }
+
+    public int getSqliteReadConnections() {
+        return settings.sqliteReadConnections;
+    }
+
+    public long getSqliteBusyTimeoutMillis() {
+        return settings.sqliteBusyTimeoutMillis;
+    }
+
+    public long getFlushIntervalMillis() {
+        return settings.flushIntervalMillis;
+    }
+
+    public boolean isFlushLoggingEnabled() {
+        return settings.flushLoggingEnabled;
+    }
+
+    public int getMigrationChunkSize() {
+        return settings.migrationChunkSize;
+    }
+
+    public long getMigrationChunkPauseMillis() {
+        return settings.migrationChunkPauseMillis;
+    }
+
+    public boolean isFlatFileSyncOnFlush() {
+        return settings.flatFileSyncOnFlush;
+    }
+
+    public long getFlatFileCompactionIntervalMinutes() {
+        return settings.flatFileCompactionIntervalMinutes;
+    }
+
+    public boolean isOnlineOnlyCache() {
+        return settings.onlineOnlyCache;
+    }
+
+    public long getCacheEvictionGraceMillis() {
+        return settings.cacheEvictionGraceMillis;
+    }
+
+    public int getNameCacheSize() {
+        return settings.nameCacheSize;
     }
 
     public int getMaxMembersPerGang() {
-        return config.getInt("gang-settings.max-members-per-gang", 10);
+        return settings.maxMembersPerGang;
     }
 
     public boolean isPvpBetweenMembersEnabled() {
-        return config.getBoolean("gang-settings.enable-pvp-between-members", false);
+        return settings.pvpBetweenMembersEnabled;
+    }
+
+    public int getListPageSize() {
+        return settings.listPageSize;
+    }
+
+    public int getSearchResultLimit() {
+        return settings.searchResultLimit;
     }
 
     public int getMaxNameLength() {
-        return config.getInt("gang-settings.max-name-length", 16);
+        return settings.maxNameLength;
     }
 
     public int getMinNameLength() {
-        return config.getInt("gang-settings.min-name-length", 3);
+        return settings.minNameLength;
+    }
+
+    public Pattern getNamePattern() {
+        return settings.namePattern;
+    }
+
+    public long getInviteExpirationMillis() {
+        return settings.inviteExpirationMillis;
+    }
+
+    public int getMaxPendingInvitesPerGang() {
+        return settings.maxPendingInvitesPerGang;
+    }
+
+    public MessageTemplate getTemplate(String path) {
+        return settings.message(path);
+    }
+
+    public MessageTemplate getTemplateNoPrefix(String path) {
+        return settings.messageNoPrefix(path);
     }
 
     public String getMessage(String path) {
-        String prefix = config.getString("messages.prefix", "&8[&6AZGangs&8] ");
-        String message = config.getString("messages." + path, "&cErrore: " + path);
-        return ChatColor.translateAlternateColorCodes('&', prefix + message);
+        return getTemplate(path).render();
+    }
+
+    public String getMessage(String path, MessagePlaceholder key, String value) {
+        return getTemplate(path).render(key, value);
+    }
+
+    public String getMessage(String path, MessagePlaceholder key1, String value1,
+                             MessagePlaceholder key2, String value2) {
+        return getTemplate(path).render(key1, value1, key2, value2);
     }
 
     public String getMessageNoPrefix(String path) {
-        String message = config.getString("messages." + path, "&cErrore: " + path);
-        return ChatColor.translateAlternateColorCodes('&', message);
+        return getTemplateNoPrefix(path).render();
+    }
+
+    public String getMessageNoPrefix(String path, MessagePlaceholder key, String value) {
+        return getTemplateNoPrefix(path).render(key, value);
+    }
+
+    public String getMessageNoPrefix(String path, MessagePlaceholder key1, String value1,
+                                     MessagePlaceholder key2, String value2) {
+        return getTemplateNoPrefix(path).render(key1, value1, key2, value2);
     }
 
     public String getHelpMessage(String command) {
-        return ChatColor.translateAlternateColorCodes('&', config.getString("help." + command, "&cHelp not found: " + command));
+        return settings.help(command).render();
+    }
+
+    public MessageTemplate getGangChatFormat() {
+        return settings.gangChatFormat;
     }
 
-    public String getGangChatFormat() {
-        return config.getString("messages.gang-chat-format", "&8[&eGang Chat&8] &7%playerName%&f: %message%");
+    public int getGangChatRateLimitMessages() {
+        return settings.gangChatRateLimitMessages;
     }
+
+    public long getGangChatRateLimitWindowMillis() {
+        return settings.gangChatRateLimitWindowMillis;
+    }
+
+    public boolean isMetricsEnabled() {
+        return settings.metricsEnabled;
+    }
+
+    public long getMetricsDumpIntervalMinutes() {
+        return settings.metricsDumpIntervalMinutes;
+    }
+
+    public String getMetricsDumpFormat() {
+        return settings.metricsDumpFormat;
+    }
+
     public String getPermission(String permission) {
-        return config.getString("permissions." + permission, "azgangs." + permission);
+        return settings.permission(permission);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package it.quick.azgangs.utils;
+
+public enum MessagePlaceholder {
+
+    GANG_NAME("%gangName%"),
+    NEW_NAME("%newName%"),
+    PLAYER_NAME("%playerName%"),
+    OWNER("%owner%"),
+    MEMBERS("%members%"),
+    MEMBER_COUNT("%memberCount%"),
+    MIN("%min%"),
+    MAX("%max%"),
+    PAGE("%page%"),
+    PAGES("%pages%"),
+    PREFIX("%prefix%"),
+    MESSAGE("%message%"),
+    MINUTES("%minutes%"),
+    OPERATION("%operation%"),
+    CALLS("%calls%"),
+    P99("%p99%"),
+    MAX_TIME("%maxTime%"),
+    MAIN_THREAD_TIME("%mainTime%"),
+    MAIN_THREAD_PERCENT("%mainPercent%"),
+    POOL("%pool%"),
+    ACTIVE("%active%"),
+    IDLE("%idle%"),
+    TOTAL("%total%"),
+    WAITING("%waiting%");
+
+    private final String token;
+
+    MessagePlaceholder(String token) {
+        this.token = token;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    static MessagePlaceholder fromToken(String text, int start, int end) {
+        for (MessagePlaceholder placeholder : values()) {
+            String token = placeholder.token;
+            if (token.length() == end - start && text.regionMatches(start, token, 0, token.length())) {
+                return placeholder;
+            }
+        }
+        return null;
+    }
+}
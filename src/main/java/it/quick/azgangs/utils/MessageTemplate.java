@@ -0,0 +1,115 @@
+package it.quick.azgangs.utils;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Messaggio gia' colorato e diviso in testo fisso e segnaposto, compilato una volta al caricamento della config.
+ * Il rendering e' un solo passaggio su uno StringBuilder; i segnaposto senza valore restano come nel testo.
+ */
+public final class MessageTemplate {
+
+    private final String[] literals;
+    private final MessagePlaceholder[] slots;
+    private final int literalLength;
+    private final String constant;
+
+    private MessageTemplate(String[] literals, MessagePlaceholder[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+        this.constant = slots.length == 0 ? literals[0] : null;
+    }
+
+    public static MessageTemplate compile(String raw) {
+        String text = ChatColor.translateAlternateColorCodes('&', raw);
+        List<String> literals = new ArrayList<>();
+        List<MessagePlaceholder> slots = new ArrayList<>();
+
+        int literalStart = 0;
+        int index = text.indexOf('%');
+        while (index >= 0) {
+            int end = text.indexOf('%', index + 1);
+            if (end < 0) {
+                break;
+            }
+
+            MessagePlaceholder placeholder = MessagePlaceholder.fromToken(text, index, end + 1);
+            if (placeholder != null) {
+                literals.add(text.substring(literalStart, index));
+                slots.add(placeholder);
+                literalStart = end + 1;
+                index = text.indexOf('%', literalStart);
+            } else {
+                index = end;
+            }
+        }
+        literals.add(text.substring(literalStart));
+
+        return new MessageTemplate(literals.toArray(new String[0]), slots.toArray(new MessagePlaceholder[0]));
+    }
+
+    public String render() {
+        return render(null, null, null, null, null, null);
+    }
+
+    public String render(MessagePlaceholder key, String value) {
+        return render(key, value, null, null, null, null);
+    }
+
+    public String render(MessagePlaceholder key1, String value1, MessagePlaceholder key2, String value2) {
+        return render(key1, value1, key2, value2, null, null);
+    }
+
+    public String render(MessagePlaceholder key1, String value1, MessagePlaceholder key2, String value2,
+                         MessagePlaceholder key3, String value3) {
+        if (constant != null) {
+            return constant;
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + slots.length * 16);
+        for (int i = 0; i < slots.length; i++) {
+            builder.append(literals[i]);
+
+            MessagePlaceholder slot = slots[i];
+            if (slot == key1) {
+                builder.append(value1);
+            } else if (slot == key2) {
+                builder.append(value2);
+            } else if (slot == key3) {
+                builder.append(value3);
+            } else {
+                builder.append(slot.getToken());
+            }
+        }
+        builder.append(literals[slots.length]);
+        return builder.toString();
+    }
+
+    /**
+     * Per i messaggi con piu' di tre segnaposto, come le righe di /gang debug stats.
+     */
+    public String render(Map<MessagePlaceholder, String> values) {
+        if (constant != null) {
+            return constant;
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + slots.length * 16);
+        for (int i = 0; i < slots.length; i++) {
+            builder.append(literals[i]);
+
+            String value = values.get(slots[i]);
+            builder.append(value != null ? value : slots[i].getToken());
+        }
+        builder.append(literals[slots.length]);
+        return builder.toString();
+    }
+}
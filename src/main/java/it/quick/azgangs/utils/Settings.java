@@ -0,0 +1,184 @@
+package it.quick.azgangs.utils;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Copia immutabile di config.yml, letta una sola volta al caricamento o a /gang reload.
+ * I messaggi sono gia' compilati e il pattern dei nomi gia' pronto, cosi' ogni getter e' una lettura di campo.
+ */
+final class Settings {
+
+    private static final String DEFAULT_PREFIX = "&8[&6AZGangs&8] ";
+    private static final String DEFAULT_CHAT_FORMAT = "&8[&eGang Chat&8] &7%playerName%&f: %message%";
+
+    final String databaseType;
+    final String databaseHost;
+    final int databasePort;
+    final String databaseName;
+    final String databaseUsername;
+    final String databasePassword;
+    final String databasePrefix;
+    final String databaseJdbcUrl;
+    final boolean queryMonitoringEnabled;
+    final long slowQueryMillis;
+    final boolean primaryThreadQueryWarningEnabled;
+    final long databaseConnectionTimeoutMillis;
+    final int mysqlPoolSize;
+    final int mysqlMinimumIdle;
+    final long mysqlIdleTimeoutMillis;
+    final long mysqlMaxLifetimeMillis;
+    final long mysqlKeepaliveTimeMillis;
+    final int sqliteReadConnections;
+    final long sqliteBusyTimeoutMillis;
+    final long flushIntervalMillis;
+    final boolean flushLoggingEnabled;
+    final int migrationChunkSize;
+    final long migrationChunkPauseMillis;
+    final boolean flatFileSyncOnFlush;
+    final long flatFileCompactionIntervalMinutes;
+
+    final boolean onlineOnlyCache;
+    final long cacheEvictionGraceMillis;
+    final int nameCacheSize;
+
+    final int maxMembersPerGang;
+    final boolean pvpBetweenMembersEnabled;
+    final int listPageSize;
+    final int searchResultLimit;
+    final int maxNameLength;
+    final int minNameLength;
+    final Pattern namePattern;
+    final long inviteExpirationMillis;
+    final int maxPendingInvitesPerGang;
+    final int gangChatRateLimitMessages;
+    final long gangChatRateLimitWindowMillis;
+
+    final boolean metricsEnabled;
+    final long metricsDumpIntervalMinutes;
+    final String metricsDumpFormat;
+
+    private final String prefix;
+    private final Map<String, MessageTemplate> messages;
+    private final Map<String, MessageTemplate> messagesNoPrefix;
+    private final Map<String, MessageTemplate> helpMessages;
+    private final Map<String, String> permissions;
+    final MessageTemplate gangChatFormat;
+
+    Settings(FileConfiguration config) {
+        this.databaseType = config.getString("database.type", "mysql");
+        this.databaseHost = config.getString("database.host", "localhost");
+        this.databasePort = config.getInt("database.port", 3306);
+        this.databaseName = config.getString("database.database", "azgangs");
+        this.databaseUsername = config.getString("database.username", "root");
+        this.databasePassword = config.getString("database.password", "password");
+        this.databasePrefix = config.getString("database.table-prefix", "azgangs_");
+        this.databaseJdbcUrl = config.getString("database.jdbc-url", "");
+        this.queryMonitoringEnabled = config.getBoolean("database.monitoring.enabled", true);
+        this.slowQueryMillis = Math.max(0, config.getLong("database.monitoring.slow-query-ms", 50));
+        this.primaryThreadQueryWarningEnabled = config.getBoolean("database.monitoring.warn-primary-thread", true);
+        this.databaseConnectionTimeoutMillis = Math.max(250, config.getLong("database.pool.connection-timeout-ms", 5000));
+        this.mysqlPoolSize = Math.max(1, config.getInt("database.pool.mysql.maximum-pool-size", 10));
+        this.mysqlMinimumIdle = Math.max(0, Math.min(mysqlPoolSize, config.getInt("database.pool.mysql.minimum-idle", mysqlPoolSize)));
+        this.mysqlIdleTimeoutMillis = Math.max(0, config.getLong("database.pool.mysql.idle-timeout-ms", 600000));
+        this.mysqlMaxLifetimeMillis = Math.max(0, config.getLong("database.pool.mysql.max-lifetime-ms", 1800000));
+        this.mysqlKeepaliveTimeMillis = Math.max(0, config.getLong("database.pool.mysql.keepalive-time-ms", 300000));
+        this.sqliteReadConnections = Math.max(1, config.getInt("database.pool.sqlite.read-connections", 4));
+        this.sqliteBusyTimeoutMillis = Math.max(0, config.getLong("database.pool.sqlite.busy-timeout-ms", 5000));
+        this.flushIntervalMillis = Math.max(1, config.getLong("database.write-behind.flush-interval-ms", 250));
+        this.flushLoggingEnabled = config.getBoolean("database.write-behind.log-flushes", false);
+        this.migrationChunkSize = Math.max(1, config.getInt("database.migration.chunk-size", 5000));
+        this.migrationChunkPauseMillis = Math.max(0, config.getLong("database.migration.chunk-pause-ms", 50));
+        this.flatFileSyncOnFlush = config.getBoolean("database.flatfile.sync-on-flush", true);
+        this.flatFileCompactionIntervalMinutes = config.getLong("database.flatfile.compaction-interval-minutes", 30);
+
+        this.onlineOnlyCache = config.getString("cache.mode", "full").equalsIgnoreCase("online");
+        this.cacheEvictionGraceMillis = config.getLong("cache.eviction-grace-seconds", 300) * 1000L;
+        this.nameCacheSize = config.getInt("cache.name-cache-size", 5000);
+
+        this.maxMembersPerGang = config.getInt("gang-settings.max-members-per-gang", 10);
+        this.pvpBetweenMembersEnabled = config.getBoolean("gang-settings.enable-pvp-between-members", false);
+        this.listPageSize = Math.max(1, config.getInt("gang-settings.list-page-size", 10));
+        this.searchResultLimit = Math.max(1, config.getInt("gang-settings.search-result-limit", 20));
+        this.maxNameLength = config.getInt("gang-settings.max-name-length", 16);
+        this.minNameLength = config.getInt("gang-settings.min-name-length", 3);
+        this.namePattern = Pattern.compile(config.getString("gang-settings.name-pattern", "[a-zA-Z0-9]+"));
+        this.inviteExpirationMillis = Math.max(1, config.getLong("gang-settings.invites.expiration-seconds", 60)) * 1000L;
+        this.maxPendingInvitesPerGang = Math.max(1, config.getInt("gang-settings.invites.max-pending-per-gang", 20));
+        this.gangChatRateLimitMessages = Math.max(1, config.getInt("gang-settings.chat-rate-limit.messages", 10));
+        this.gangChatRateLimitWindowMillis = Math.max(1, config.getLong("gang-settings.chat-rate-limit.seconds", 5)) * 1000L;
+
+        this.metricsEnabled = config.getBoolean("metrics.enabled", true);
+        this.metricsDumpIntervalMinutes = Math.max(0, config.getLong("metrics.dump-interval-minutes", 5));
+        this.metricsDumpFormat = config.getString("metrics.dump-format", "json");
+
+        this.prefix = config.getString("messages.prefix", DEFAULT_PREFIX);
+
+        Map<String, MessageTemplate> messages = new HashMap<>();
+        Map<String, MessageTemplate> messagesNoPrefix = new HashMap<>();
+        ConfigurationSection messageSection = config.getConfigurationSection("messages");
+        if (messageSection != null) {
+            for (String path : messageSection.getKeys(false)) {
+                String message = messageSection.getString(path);
+                if (message == null) {
+                    continue;
+                }
+                messages.put(path, MessageTemplate.compile(prefix + message));
+                messagesNoPrefix.put(path, MessageTemplate.compile(message));
+            }
+        }
+        this.messages = Collections.unmodifiableMap(messages);
+        this.messagesNoPrefix = Collections.unmodifiableMap(messagesNoPrefix);
+
+        Map<String, MessageTemplate> helpMessages = new HashMap<>();
+        ConfigurationSection helpSection = config.getConfigurationSection("help");
+        if (helpSection != null) {
+            for (String command : helpSection.getKeys(false)) {
+                String help = helpSection.getString(command);
+                if (help != null) {
+                    helpMessages.put(command, MessageTemplate.compile(help));
+                }
+            }
+        }
+        this.helpMessages = Collections.unmodifiableMap(helpMessages);
+
+        Map<String, String> permissions = new HashMap<>();
+        ConfigurationSection permissionSection = config.getConfigurationSection("permissions");
+        if (permissionSection != null) {
+            for (String permission : permissionSection.getKeys(false)) {
+                permissions.put(permission, permissionSection.getString(permission));
+            }
+        }
+        this.permissions = Collections.unmodifiableMap(permissions);
+
+        // Come getMessage("gang-chat-format") prima della chat asincrona: il formato include il prefisso.
+        MessageTemplate chatFormat = messages.get("gang-chat-format");
+        this.gangChatFormat = chatFormat != null ? chatFormat : MessageTemplate.compile(prefix + DEFAULT_CHAT_FORMAT);
+    }
+
+    // I messaggi mancanti dalla config sono rari: il fallback si compila al momento senza essere tenuto in cache.
+    MessageTemplate message(String path) {
+        MessageTemplate template = messages.get(path);
+        return template != null ? template : MessageTemplate.compile(prefix + "&cErrore: " + path);
+    }
+
+    MessageTemplate messageNoPrefix(String path) {
+        MessageTemplate template = messagesNoPrefix.get(path);
+        return template != null ? template : MessageTemplate.compile("&cErrore: " + path);
+    }
+
+    MessageTemplate help(String command) {
+        MessageTemplate template = helpMessages.get(command);
+        return template != null ? template : MessageTemplate.compile("&cHelp not found: " + command);
+    }
+
+    String permission(String permission) {
+        String node = permissions.get(permission);
+        return node != null ? node : "azgangs." + permission;
+    }
+}
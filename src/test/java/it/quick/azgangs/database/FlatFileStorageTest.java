@@ -0,0 +1,230 @@
+package it.quick.azgangs.database;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.TestPlugin;
+import it.quick.azgangs.models.Gang;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlatFileStorageTest {
+
+    private static final UUID OWNER = new UUID(0, 1);
+    private static final UUID MEMBER = new UUID(0, 2);
+    private static final UUID OTHER = new UUID(0, 3);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AZGangs plugin;
+
+    @Before
+    public void setUp() throws Exception {
+        plugin = TestPlugin.create(folder.getRoot(),
+                Collections.singletonMap("database.flatfile.sync-on-flush", false));
+    }
+
+    @Test
+    public void replayRestoresStateInJoinOrder() {
+        FlatFileStorage storage = open();
+        try {
+            WriteBatch batch = new WriteBatch();
+            batch.createGang(1, "Alpha", OWNER, 10L);
+            batch.addMember(1, OWNER);
+            batch.addMember(1, MEMBER);
+            batch.createGang(2, "Beta", OTHER, 20L);
+            batch.addMember(2, OTHER);
+            batch.updatePlayerName(OWNER, "Owner");
+            assertTrue(storage.flush(batch));
+
+            batch = new WriteBatch();
+            batch.renameGang(2, "Gamma");
+            batch.removeMember(OTHER);
+            assertTrue(storage.flush(batch));
+        } finally {
+            storage.close();
+        }
+
+        storage = open();
+        try {
+            Gang alpha = storage.getGangByName("ALPHA");
+            assertEquals(1, alpha.getId());
+            assertEquals(OWNER, alpha.getOwnerUUID());
+            assertEquals(10L, alpha.getCreatedAt());
+            assertEquals(Arrays.asList(OWNER, MEMBER), storage.getGangMembers(1));
+
+            assertNull(storage.getGangByName("Beta"));
+            assertEquals(2, storage.getGangByName("gamma").getId());
+            assertFalse(storage.isPlayerInGang(OTHER));
+            assertEquals(Collections.singletonMap(OWNER, "Owner"), storage.getPlayerNames(Arrays.asList(OWNER, OTHER)));
+            assertEquals(2, storage.getHighestGangId());
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    public void disbandRemovesGangAndMembers() {
+        FlatFileStorage storage = open();
+        try {
+            WriteBatch batch = new WriteBatch();
+            batch.createGang(1, "Alpha", OWNER, 10L);
+            batch.addMember(1, OWNER);
+            assertTrue(storage.flush(batch));
+
+            batch = new WriteBatch();
+            batch.disbandGang(1);
+            assertTrue(storage.flush(batch));
+        } finally {
+            storage.close();
+        }
+
+        storage = open();
+        try {
+            assertNull(storage.getGangById(1));
+            assertNull(storage.getGangByName("alpha"));
+            assertFalse(storage.isPlayerInGang(OWNER));
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    public void replayStopsAtCorruptedRecordAndOverwritesIt() throws Exception {
+        FlatFileStorage storage = open();
+        try {
+            WriteBatch batch = new WriteBatch();
+            batch.createGang(1, "Alpha", OWNER, 10L);
+            assertTrue(storage.flush(batch));
+
+            batch = new WriteBatch();
+            batch.updatePlayerName(OWNER, "Owner");
+            assertTrue(storage.flush(batch));
+        } finally {
+            storage.close();
+        }
+
+        // Un byte cambiato nell'ultimo record simula una scrittura interrotta a meta'.
+        try (RandomAccessFile file = new RandomAccessFile(new File(folder.getRoot(), "gangs-1.log"), "rw")) {
+            long lastRecord = lastRecordPosition(file);
+            file.seek(lastRecord + 8);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        storage = open();
+        try {
+            assertEquals("Alpha", storage.getGangById(1).getName());
+            assertTrue(storage.getPlayerNames(Collections.singleton(OWNER)).isEmpty());
+
+            WriteBatch batch = new WriteBatch();
+            batch.updatePlayerName(MEMBER, "Member");
+            assertTrue(storage.flush(batch));
+        } finally {
+            storage.close();
+        }
+
+        storage = open();
+        try {
+            assertEquals(Collections.singletonMap(MEMBER, "Member"),
+                    storage.getPlayerNames(Arrays.asList(OWNER, MEMBER)));
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    public void rejectedBatchLeavesNoRecords() {
+        char[] longName = new char[70000];
+        Arrays.fill(longName, 'x');
+
+        FlatFileStorage storage = open();
+        try {
+            WriteBatch batch = new WriteBatch();
+            batch.createGang(1, "Alpha", OWNER, 10L);
+            batch.createGang(2, new String(longName), OTHER, 20L);
+            assertFalse(storage.flush(batch));
+            assertNull(storage.getGangById(1));
+        } finally {
+            storage.close();
+        }
+
+        storage = open();
+        try {
+            assertNull(storage.getGangById(1));
+            assertEquals(0, storage.getHighestGangId());
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    public void compactionKeepsLiveStateInNewGeneration() {
+        FlatFileStorage storage = open();
+        try {
+            WriteBatch batch = new WriteBatch();
+            batch.createGang(1, "Alpha", OWNER, 10L);
+            batch.addMember(1, OWNER);
+            batch.addMember(1, MEMBER);
+            assertTrue(storage.flush(batch));
+
+            for (int i = 0; i < 1100; i++) {
+                batch = new WriteBatch();
+                batch.renameGang(1, "Alpha" + i);
+                assertTrue(storage.flush(batch));
+            }
+        } finally {
+            storage.close();
+        }
+
+        // La rilettura trova molti piu' record che dati vivi e compatta subito.
+        storage = open();
+        try {
+            assertEquals("Alpha1099", storage.getGangById(1).getName());
+        } finally {
+            storage.close();
+        }
+        assertFalse(new File(folder.getRoot(), "gangs-1.log").exists());
+        assertTrue(new File(folder.getRoot(), "gangs-2.log").exists());
+
+        storage = open();
+        try {
+            assertEquals(1, storage.getGangByName("alpha1099").getId());
+            assertEquals(Arrays.asList(OWNER, MEMBER), storage.getGangMembers(1));
+        } finally {
+            storage.close();
+        }
+    }
+
+    private FlatFileStorage open() {
+        FlatFileStorage storage = new FlatFileStorage(plugin);
+        storage.initialize();
+        return storage;
+    }
+
+    // Ogni record e' lunghezza, CRC32 e contenuto dopo un header di 8 byte; una lunghezza a zero chiude il log.
+    private static long lastRecordPosition(RandomAccessFile file) throws Exception {
+        long position = 8;
+        long last = -1;
+        while (true) {
+            file.seek(position);
+            int length = file.readInt();
+            if (length <= 0) {
+                return last;
+            }
+            last = position;
+            position += 8 + length;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package it.quick.azgangs.database;
+
+import it.quick.azgangs.AZGangs;
+import it.quick.azgangs.TestPlugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sqlite.SQLiteDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SchemaMigratorTest {
+
+    private static final int ROWS = 25;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AZGangs plugin;
+    private SQLiteDataSource dataSource;
+    private ScheduledExecutorService executor;
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("database.migration.chunk-size", 10);
+        overrides.put("database.migration.chunk-pause-ms", 0);
+        plugin = TestPlugin.create(folder.getRoot(), overrides);
+
+        dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + folder.newFile("test.db").getAbsolutePath());
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void offlineMigrationsRunOnceInVersionOrder() throws Exception {
+        SchemaMigrator migrator = new SchemaMigrator(plugin, dataSource, "test_");
+        migrator.register(new CreateTable(2, "second", "id INTEGER"));
+        migrator.register(new CreateTable(1, "first", "id INTEGER"));
+        migrator.migrate(executor);
+
+        assertEquals(Arrays.asList("create first", "create second"), events);
+        assertFalse(migrator.isMigrating());
+
+        events.clear();
+        migrator = new SchemaMigrator(plugin, dataSource, "test_");
+        migrator.register(new CreateTable(1, "first", "id INTEGER"));
+        migrator.register(new CreateTable(2, "second", "id INTEGER"));
+        migrator.migrate(executor);
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void offlineMigrationsAfterOnlineOneRunBeforeTheBackfill() throws Exception {
+        SchemaMigrator migrator = new SchemaMigrator(plugin, dataSource, "test_");
+        migrator.register(new CreateItems(1));
+        migrator.register(new DoubleValues(2, -1));
+        migrator.register(new CreateTable(3, "players", "id INTEGER"));
+        migrator.migrate(executor);
+        awaitCompletion(migrator);
+
+        assertEquals(Arrays.asList("create items", "create players", "prepare", "start"), events.subList(0, 4));
+        assertEquals("finish", events.get(events.size() - 1));
+        assertEquals(Arrays.asList(1, 2, 3), appliedVersions());
+        assertBackfilled();
+    }
+
+    @Test
+    public void onlineMigrationResumesFromSavedCursor() throws Exception {
+        SchemaMigrator migrator = new SchemaMigrator(plugin, dataSource, "test_");
+        migrator.register(new CreateItems(1));
+        DoubleValues interrupted = new DoubleValues(2, 1);
+        interrupted.migrator = migrator;
+        migrator.register(interrupted);
+        migrator.migrate(executor);
+
+        // Il riavvio del server equivale a un nuovo migrator sullo stesso database.
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1), appliedVersions());
+        executor = Executors.newSingleThreadScheduledExecutor();
+        events.clear();
+
+        migrator = new SchemaMigrator(plugin, dataSource, "test_");
+        migrator.register(new CreateItems(1));
+        migrator.register(new DoubleValues(2, -1));
+        migrator.migrate(executor);
+        awaitCompletion(migrator);
+
+        assertFalse(events.contains("prepare"));
+        assertEquals(Arrays.asList("start", "chunk 10"), events.subList(0, 2));
+        assertEquals(Arrays.asList(1, 2), appliedVersions());
+        assertBackfilled();
+        assertEquals(0, count("SELECT COUNT(*) FROM test_schema_progress"));
+    }
+
+    @Test
+    public void completeOnlineMigrationIsOnlyMarkedApplied() throws Exception {
+        SchemaMigrator migrator = new SchemaMigrator(plugin, dataSource, "test_");
+        migrator.register(new CreateTable(1, "items", "id INTEGER PRIMARY KEY, value INTEGER"));
+        migrator.register(new DoubleValues(2, -1));
+        migrator.migrate(executor);
+
+        assertFalse(migrator.isMigrating());
+        assertFalse(events.contains("prepare"));
+        assertEquals(Arrays.asList(1, 2), appliedVersions());
+    }
+
+    private void awaitCompletion(SchemaMigrator migrator) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (migrator.isMigrating()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Migrazione online non completata: " + events);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void assertBackfilled() throws SQLException {
+        assertEquals(ROWS, count("SELECT COUNT(*) FROM items WHERE doubled = value * 2"));
+    }
+
+    private List<Integer> appliedVersions() throws SQLException {
+        List<Integer> versions = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version FROM test_schema_version ORDER BY version")) {
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private int count(String query) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private class CreateTable extends Migration {
+
+        private final String table;
+        private final String columns;
+
+        private CreateTable(int version, String table, String columns) {
+            super(version, "crea " + table);
+            this.table = table;
+            this.columns = columns;
+        }
+
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE " + table + " (" + columns + ")");
+            }
+            events.add("create " + table);
+        }
+    }
+
+    private class CreateItems extends Migration {
+
+        private CreateItems(int version) {
+            super(version, "crea items");
+        }
+
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE items (id INTEGER PRIMARY KEY, value INTEGER)");
+                for (int i = 1; i <= ROWS; i++) {
+                    statement.executeUpdate("INSERT INTO items (id, value) VALUES (" + i + ", " + i * 3 + ")");
+                }
+            }
+            events.add("create items");
+        }
+    }
+
+    /**
+     * Aggiunge items.doubled e lo riempie a blocchi; con stopAfterChunks >= 0 ferma il migrator dopo quei blocchi.
+     */
+    private class DoubleValues extends OnlineMigration {
+
+        private final int stopAfterChunks;
+        private SchemaMigrator migrator;
+        private int chunks;
+
+        private DoubleValues(int version, int stopAfterChunks) {
+            super(version, "items.doubled");
+            this.stopAfterChunks = stopAfterChunks;
+        }
+
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("ALTER TABLE items ADD COLUMN doubled INTEGER");
+            }
+            events.add("prepare");
+        }
+
+        @Override
+        public void onStart() {
+            events.add("start");
+        }
+
+        @Override
+        public boolean isComplete(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM items")) {
+                resultSet.next();
+                return resultSet.getInt(1) == 0;
+            }
+        }
+
+        @Override
+        public long migrateChunk(Connection connection, long cursor, int limit) throws SQLException {
+            events.add("chunk " + cursor);
+            if (stopAfterChunks >= 0 && ++chunks >= stopAfterChunks) {
+                migrator.stop();
+            }
+
+            long last = -1;
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT id FROM items WHERE id > ? ORDER BY id LIMIT ?");
+                 PreparedStatement update = connection.prepareStatement(
+                         "UPDATE items SET doubled = value * 2 WHERE id = ?")) {
+                select.setLong(1, cursor);
+                select.setInt(2, limit);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        last = resultSet.getLong(1);
+                        update.setLong(1, last);
+                        update.executeUpdate();
+                    }
+                }
+            }
+            return last;
+        }
+
+        @Override
+        public void finish(Connection connection) {
+            events.add("finish");
+        }
+    }
+}
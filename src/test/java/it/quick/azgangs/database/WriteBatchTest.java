@@ -0,0 +1,129 @@
+package it.quick.azgangs.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBatchTest {
+
+    private static final UUID OWNER = new UUID(0, 1);
+    private static final UUID MEMBER = new UUID(0, 2);
+    private static final UUID OTHER = new UUID(0, 3);
+
+    @Test
+    public void renameAfterCreateKeepsSingleCreation() {
+        WriteBatch batch = new WriteBatch();
+        batch.createGang(1, "Alpha", OWNER, 10L);
+        batch.renameGang(1, "Beta");
+
+        WriteBatch.GangWrite write = only(batch);
+        assertTrue(write.isCreated());
+        assertFalse(write.isRenamed());
+        assertEquals("Beta", write.getName());
+        assertEquals(OWNER, write.getOwnerUUID());
+        assertEquals(1, batch.size());
+        assertEquals(2, batch.getSubmittedOperations());
+    }
+
+    @Test
+    public void disbandAfterCreateDropsGangAndItsMembers() {
+        WriteBatch batch = new WriteBatch();
+        batch.createGang(1, "Alpha", OWNER, 10L);
+        batch.addMember(1, OWNER);
+        batch.addMember(1, MEMBER);
+        batch.disbandGang(1);
+
+        assertTrue(batch.getGangWrites().isEmpty());
+        assertEquals(Integer.valueOf(WriteBatch.NO_GANG), batch.getMemberWrites().get(OWNER));
+        assertEquals(Integer.valueOf(WriteBatch.NO_GANG), batch.getMemberWrites().get(MEMBER));
+        assertEquals(4, batch.getSubmittedOperations());
+    }
+
+    @Test
+    public void renameAfterDisbandIsIgnored() {
+        WriteBatch batch = new WriteBatch();
+        batch.disbandGang(1);
+        batch.renameGang(1, "Alpha");
+
+        WriteBatch.GangWrite write = only(batch);
+        assertTrue(write.isDisbanded());
+        assertNull(write.getName());
+    }
+
+    @Test
+    public void lastMemberWriteWins() {
+        WriteBatch batch = new WriteBatch();
+        batch.addMember(1, MEMBER);
+        batch.removeMember(MEMBER);
+        batch.addMember(2, MEMBER);
+
+        assertEquals(1, batch.getMemberWrites().size());
+        assertEquals(Integer.valueOf(2), batch.getMemberWrites().get(MEMBER));
+        assertEquals(3, batch.getSubmittedOperations());
+    }
+
+    @Test
+    public void splitKeepsMembersOfCreatedGangWithTheCreation() {
+        WriteBatch batch = new WriteBatch();
+        batch.createGang(1, "Alpha", OWNER, 10L);
+        batch.renameGang(2, "Beta");
+        batch.addMember(1, OWNER);
+        batch.addMember(2, MEMBER);
+        batch.updatePlayerName(OTHER, "Other");
+
+        List<WriteBatch> parts = batch.split();
+        assertEquals(4, parts.size());
+
+        WriteBatch created = parts.get(0);
+        assertEquals(1, only(created).getGangId());
+        assertEquals(Collections.singletonMap(OWNER, 1), created.getMemberWrites());
+        assertEquals(new HashSet<Object>(Arrays.asList(1, OWNER)), created.getKeys());
+        assertEquals(2, created.getSubmittedOperations());
+
+        WriteBatch renamed = parts.get(1);
+        assertEquals(2, only(renamed).getGangId());
+        assertEquals(Collections.singleton(2), renamed.getKeys());
+
+        WriteBatch member = parts.get(2);
+        assertEquals(Collections.singletonMap(MEMBER, 2), member.getMemberWrites());
+        assertEquals(Collections.singleton(MEMBER), member.getKeys());
+
+        WriteBatch name = parts.get(3);
+        assertEquals(Collections.singletonMap(OTHER, "Other"), name.getPlayerNames());
+        assertTrue(name.getKeys().isEmpty());
+
+        int operations = 0;
+        for (WriteBatch part : parts) {
+            operations += part.getSubmittedOperations();
+        }
+        assertEquals(batch.size(), operations);
+    }
+
+    @Test
+    public void completeFailsOnlyCallbacksOfFailedKeys() {
+        WriteBatch batch = new WriteBatch();
+        List<String> results = new ArrayList<>();
+        batch.addCallback(1, success -> results.add("gang " + success));
+        batch.addCallback(MEMBER, success -> results.add("member " + success));
+        batch.addCallback(MEMBER, null);
+
+        batch.complete(Collections.singleton(MEMBER));
+
+        assertEquals(Arrays.asList("gang true", "member false"), results);
+    }
+
+    private static WriteBatch.GangWrite only(WriteBatch batch) {
+        assertEquals(1, batch.getGangWrites().size());
+        return batch.getGangWrites().iterator().next();
+    }
+}
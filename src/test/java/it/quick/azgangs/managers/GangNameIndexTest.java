@@ -0,0 +1,61 @@
+package it.quick.azgangs.managers;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class GangNameIndexTest {
+
+    @Test
+    public void searchIsCaseInsensitiveAndAlphabetical() {
+        GangNameIndex index = new GangNameIndex();
+        index.add("Wolves");
+        index.add("alpha");
+        index.add("Alpine");
+        index.add("Al");
+
+        assertEquals(Arrays.asList("Al", "alpha", "Alpine"), index.search("AL", 10));
+        assertEquals(Arrays.asList("Al", "alpha", "Alpine", "Wolves"), index.search("", 10));
+        assertEquals(Collections.emptyList(), index.search("beta", 10));
+    }
+
+    @Test
+    public void searchStopsAtLimit() {
+        GangNameIndex index = new GangNameIndex();
+        index.add("aa");
+        index.add("ab");
+        index.add("ac");
+
+        assertEquals(Arrays.asList("aa", "ab"), index.search("a", 2));
+    }
+
+    @Test
+    public void removeKeepsNamesSharingThePrefix() {
+        GangNameIndex index = new GangNameIndex();
+        index.add("Alpha");
+        index.add("Alp");
+        index.add("Alpine");
+
+        index.remove("alpha");
+        index.remove("Missing");
+
+        assertEquals(Arrays.asList("Alp", "Alpine"), index.search("al", 10));
+
+        index.remove("Alp");
+        index.remove("Alpine");
+
+        assertEquals(Collections.emptyList(), index.search("", 10));
+    }
+
+    @Test
+    public void addingSameNameReplacesItsCase() {
+        GangNameIndex index = new GangNameIndex();
+        index.add("alpha");
+        index.add("ALPHA");
+
+        assertEquals(Collections.singletonList("ALPHA"), index.search("a", 10));
+    }
+}
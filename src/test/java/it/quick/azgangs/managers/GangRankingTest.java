@@ -0,0 +1,107 @@
+package it.quick.azgangs.managers;
+
+import it.quick.azgangs.models.Gang;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class GangRankingTest {
+
+    @Test
+    public void ordersByMemberCountThenId() {
+        GangRanking ranking = new GangRanking();
+        Gang small = gang(1, 1);
+        Gang large = gang(2, 3);
+        Gang tied = gang(3, 1);
+        ranking.add(tied);
+        ranking.add(small);
+        ranking.add(large);
+
+        assertSame(large, ranking.getByRank(1));
+        assertSame(small, ranking.getByRank(2));
+        assertSame(tied, ranking.getByRank(3));
+        assertNull(ranking.getByRank(0));
+        assertNull(ranking.getByRank(4));
+        assertEquals(3, ranking.getRank(tied));
+    }
+
+    @Test
+    public void updateMovesGangWhenMemberCountChanges() {
+        GangRanking ranking = new GangRanking();
+        Gang first = gang(1, 2);
+        Gang second = gang(2, 1);
+        ranking.add(first);
+        ranking.add(second);
+
+        second.addMember(new UUID(2, 100));
+        second.addMember(new UUID(2, 101));
+        ranking.update(second);
+
+        assertEquals(1, ranking.getRank(second));
+        assertEquals(2, ranking.getRank(first));
+        assertEquals(2, ranking.size());
+    }
+
+    @Test
+    public void removedGangHasNoRank() {
+        GangRanking ranking = new GangRanking();
+        Gang gang = gang(1, 1);
+        ranking.add(gang);
+        long version = ranking.getVersion();
+
+        ranking.remove(gang);
+
+        assertEquals(0, ranking.getRank(gang));
+        assertEquals(0, ranking.size());
+        assertNotEquals(version, ranking.getVersion());
+    }
+
+    @Test
+    public void matchesSortedListAfterRandomChanges() {
+        GangRanking ranking = new GangRanking();
+        Map<Integer, Gang> gangs = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            int gangId = 1 + random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                Gang removed = gangs.remove(gangId);
+                if (removed != null) {
+                    ranking.remove(removed);
+                }
+            } else {
+                Gang gang = gang(gangId, 1 + random.nextInt(10));
+                gangs.put(gangId, gang);
+                ranking.add(gang);
+            }
+        }
+
+        List<Gang> expected = new ArrayList<>(gangs.values());
+        expected.sort(Comparator.comparingInt(Gang::getMemberCount).reversed().thenComparingInt(Gang::getId));
+
+        assertEquals(expected.size(), ranking.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), ranking.getByRank(i + 1));
+            assertEquals(i + 1, ranking.getRank(expected.get(i)));
+        }
+    }
+
+    private static Gang gang(int id, int members) {
+        Gang gang = new Gang(id, "gang" + id, new UUID(id, 0), 0L);
+        for (int i = 0; i < members; i++) {
+            gang.addMember(new UUID(id, i));
+        }
+        return gang;
+    }
+}